@@ -9,11 +9,22 @@ public class BitBoardAnalytics {
     private static boolean adjacentTilesComputed = false;
 
     private boolean cornerPlayed = false, edgePlayed = false;
-    private long stableTiles = 0L; // Bit representation of all tiles whose owner can no longer change.
-    private boolean leftEdgeFilled = false; // Have all positions on the left edge been played?
-    private boolean rightEdgeFilled = false; // Have all positions on the right edge been played?
-    private boolean topEdgeFilled = false; // Have all positions on the top edge been played?
-    private boolean bottomEdgeFilled = false; // Have all positions on the bottom edge been played?
+    /*
+        Bit representation of the tiles of each player whose owner can no longer change.
+        Computed when first asked for and cached until the next move. UNKNOWN_STABLE is
+        only a real value when one player owns the whole board, which just costs a recompute.
+        Volatile for the same reason as OthelloBitBoard's move masks: several search threads
+        may read one board, and a long that isn't volatile may be seen half written.
+     */
+    private static final long UNKNOWN_STABLE = -1L;
+    private volatile long stableDarkTiles = UNKNOWN_STABLE, stableLightTiles = UNKNOWN_STABLE;
+
+    /*
+        Masks that remove the tiles which wrap around to the neighbouring row when the
+        board is shifted one column to the right (NOT_COL_A) or to the left (NOT_COL_H):
+     */
+    private static final long NOT_COL_A = 0xFEFEFEFEFEFEFEFEL, NOT_COL_H = 0x7F7F7F7F7F7F7F7FL;
+    private static final long LEFT_RIGHT_COLS = 0x8181818181818181L, TOP_BOTTOM_ROWS = 0xFF000000000000FFL;
 
     /*
         A bitmask of all edge tiles of the board:
@@ -46,14 +57,10 @@ public class BitBoardAnalytics {
     }
 
     public BitBoardAnalytics(BitBoardAnalytics old) {
-        stableTiles = old.stableTiles;
+        stableDarkTiles = old.stableDarkTiles;
+        stableLightTiles = old.stableLightTiles;
         cornerPlayed = old.cornerPlayed;
         edgePlayed = old.edgePlayed;
-        leftEdgeFilled = old.leftEdgeFilled;
-        rightEdgeFilled = old.rightEdgeFilled;
-        topEdgeFilled = old.topEdgeFilled;
-        bottomEdgeFilled = old.bottomEdgeFilled;
-
     }
 
     private long bitRep(final int row, final int col) {
@@ -134,54 +141,6 @@ public class BitBoardAnalytics {
         adjacentTilesComputed = true;
     }
 
-    /**
-     * Checks whether any edges have been completely filled by tiles. If an edge
-     * has been filled, then the entire edge is added to the stable tile mask.
-     */
-    private void updateEdgeStability(final long darkBoard, final long lightBoard) {
-        if (topEdgeFilled && bottomEdgeFilled && leftEdgeFilled && rightEdgeFilled) {
-            return;
-        }
-
-        long board = darkBoard | lightBoard; // A bitmask of all nonempty tiles.
-
-        /*
-            Checks if all tiles on the top edge of the board are filled:
-            1 1 1 1 1 1 1 1
-            0 0 0 0 0 0 0 0
-            0 0 0 0 0 0 0 0
-            0 0 0 0 0 0 0 0
-            0 0 0 0 0 0 0 0
-            0 0 0 0 0 0 0 0
-            0 0 0 0 0 0 0 0
-            0 0 0 0 0 0 0 0
-         */
-        final long topEdge = 0xFF00000000000000L;
-        topEdgeFilled = (board & topEdge) == topEdge;
-        if (topEdgeFilled) {
-            stableTiles |= topEdge;
-        }
-
-        final long bottomEdge = 0x00000000000000FFL;
-        bottomEdgeFilled = (board & bottomEdge) == bottomEdge;
-        if (bottomEdgeFilled) {
-            stableTiles |= bottomEdge;
-        }
-
-        final long leftEdge = 0x8080808080808080L;
-        leftEdgeFilled = (board & leftEdge) == leftEdge;
-        if (leftEdgeFilled) {
-            stableTiles |= leftEdge;
-        }
-
-        final long rightEdge = 0x0101010101010101L;
-        rightEdgeFilled = (board & rightEdge) == rightEdge;
-        if (rightEdgeFilled) {
-            stableTiles |= rightEdge;
-        }
-    }
-
-
     public boolean isCorner(final int row, final int col) {
         return isCorner(bitRep(row, col));
     }
@@ -199,19 +158,36 @@ public class BitBoardAnalytics {
     }
 
     public int getStableTileCount(final TileState playerColor, final long darkBoard, final long lightBoard) {
-        if (!cornerPlayed) {// no stable tiles are possible yet
-            return 0;
+        return Long.bitCount(getStableTiles(playerColor, darkBoard, lightBoard));
+    }
+
+    /**
+     * Returns the tiles of the player with colour playerColor that can no longer change colour.
+     */
+    public long getStableTiles(final TileState playerColor, final long darkBoard, final long lightBoard) {
+        if (playerColor == TileState.DARK) {
+            long stable = stableDarkTiles;
+            if (stable == UNKNOWN_STABLE) {
+                stable = computeStableTiles(darkBoard, lightBoard);
+                stableDarkTiles = stable;
+            }
+            return stable;
+        } else {
+            long stable = stableLightTiles;
+            if (stable == UNKNOWN_STABLE) {
+                stable = computeStableTiles(lightBoard, darkBoard);
+                stableLightTiles = stable;
+            }
+            return stable;
         }
-        long playerBoard = playerColor == TileState.DARK ? darkBoard : lightBoard;
-        return Long.bitCount(stableTiles & playerBoard);
     }
 
     /**
-     * Updates the set of tiles that can no longer change colour for both players.
+     * Forgets the cached stable tiles; called whenever the board changes.
      */
-    public void updateStableBoard(final long darkBoard, final long lightBoard) {
-        updateStableBoard(TileState.DARK, darkBoard, lightBoard);
-        updateStableBoard(TileState.LIGHT, darkBoard, lightBoard);
+    void invalidateStability() {
+        stableDarkTiles = UNKNOWN_STABLE;
+        stableLightTiles = UNKNOWN_STABLE;
     }
 
     /*
@@ -232,99 +208,74 @@ public class BitBoardAnalytics {
     }
 
     /**
-     * Updates the set of tiles that can no longer change colour with colour playerColour.
+     * Returns the tiles of playerBoard that can no longer change colour. A tile can only be
+     * flipped along one of the four lines through it, and it is safe along a line if the line
+     * is completely filled, or if one of its neighbours on the line is off the board or is a
+     * stable tile of the same colour. Starting from the tiles that are safe on all four lines
+     * through filled lines and the board edges alone, stability spreads to neighbouring tiles
+     * until nothing changes.
      */
-    private void updateStableBoard(final TileState playerColor, final long darkBoard, final long lightBoard) {
-        if (!cornerPlayed) {// No stable tiles are possible if no corners have been played.
-            return;
-        }
-        updateEdgeStability(darkBoard, lightBoard); // Special handling for if an entire edge is filled
-        long playerBoard = playerColor == TileState.DARK ? darkBoard : lightBoard;
-		/*
-		 * Go through the entire board. After determining that a candidate position
-		 * is stable, restart the search through the board (since the additional
-		 * stable tile could mean other tiles are now stable too).
-		 */
-        for (long i = 0; i < 64; i++) {
-            long candidate = 0x1L << i;
-            // Ignore tiles of the wrong color:
-            if ((playerBoard & candidate) == 0L) {
-                continue;
-            }
-            // Candidate already known to be stable:
-            else if ((stableTiles & candidate) != 0L) {
-                continue;
-            }
+    static long computeStableTiles(final long playerBoard, final long opponentBoard) {
+        final long empty = ~(playerBoard | opponentBoard);
+        // Tiles whose line in each direction contains no empty tile:
+        final long fullRows = ~spreadAlongLine(empty, 1, NOT_COL_A, NOT_COL_H);
+        final long fullColumns = ~spreadAlongLine(empty, 8, -1L, -1L);
+        final long fullDiagonals = ~spreadAlongLine(empty, 9, NOT_COL_A, NOT_COL_H);
+        final long fullAntiDiagonals = ~spreadAlongLine(empty, 7, NOT_COL_H, NOT_COL_A);
 
-            // A candidate is stable if it is a corner position:
-            if (isCorner(candidate)) {
-                stableTiles |= candidate;
-                i = 0;
-            }
-            /*
-                A candidate is stable if it is an edge position and adjacent to a
-                stable edge tile with the same colour:
-             */
-            else if (isEdge(candidate)) {
-                boolean stableEdge = Long.bitCount(
-                        (getAdjacentTiles(candidate, playerColor, darkBoard, lightBoard) & stableTiles)
-                                & EDGE_MASK
-                ) > 0; //only consider edge tiles
-                if (stableEdge) {
-                    stableTiles |= candidate;
-                    i = 0;
-                }
-            }
-            // A candidate is stable if there are sufficient adjacent stable tiles of the same colour:
-            else {
-                long stableNeighbors = Long.bitCount(getAdjacentTiles(candidate, playerColor, darkBoard, lightBoard) & stableTiles);
-                if (stableNeighbors == 3) {
-					/* Four adjacent stable neighbours of the same colour guarantees the candidate
-					 * is stable. There is a special configuration where 3 stable neighbors is
-					 * sufficient to say a candidate for stability is stable. Isomorphic under
-					 * rotation, with C the candidate position and S are three tiles known to
-					 * be stable with the same color as C:
-					case 1:
-					 S S
-					 S C
-					case 2:
-					 S S
-					 C S
-					case 3:
-					 C S
-					 S S
-					case 4:
-					 S C
-					 S S
-					Don't need to worry about going over board edge, since the current position
-					is guaranteed to not be an edge. */
-                    long config1 = (0x1L << (i-1L)) | (0x1L << (i-9L)) | (0x1L << (i-8L)),
-                            config2 = (0x1L << (i-8L)) | (0x1L << (i-7L)) | (0x1L << (i+1L)),
-                            config3 = (0x1L << (i+1L)) | (0x1L << (i+9L)) | (0x1L << (i+8L)),
-                            config4 = (0x1L << (i+8L)) | (0x1L << (i+7L)) | (0x1L << (i-1L));
-
-                    if ((config1 & stableTiles) == config1
-                            || (config2 & stableTiles) == config2
-                            || (config3 & stableTiles) == config3
-                            || (config4 & stableTiles) == config4) {
-                        stableTiles |= candidate;
-                        i = 0;
-                    }
-                }
-                // If a candidate is adjacent to at least 4 stable tiles of the same color, then it is also stable:
-                else if (stableNeighbors >= 4) {
-                    stableTiles |= candidate;
-                    i = 0;
-                }
-            }
+        long stable = 0L;
+        long previous;
+        do {
+            previous = stable;
+            long safeHorizontally = fullRows | LEFT_RIGHT_COLS
+                    | ((stable << 1) & NOT_COL_A) | ((stable >>> 1) & NOT_COL_H);
+            long safeVertically = fullColumns | TOP_BOTTOM_ROWS | (stable << 8) | (stable >>> 8);
+            long safeDiagonally = fullDiagonals | EDGE_MASK
+                    | ((stable << 9) & NOT_COL_A) | ((stable >>> 9) & NOT_COL_H);
+            long safeAntiDiagonally = fullAntiDiagonals | EDGE_MASK
+                    | ((stable << 7) & NOT_COL_H) | ((stable >>> 7) & NOT_COL_A);
+            stable |= playerBoard & safeHorizontally & safeVertically & safeDiagonally & safeAntiDiagonally;
+        } while (stable != previous);
+        return stable;
+    }
 
-        }
+    /*
+        Spreads every set bit of tiles along the line given by shift, in both directions, until it
+        covers the whole line. Lines are at most eight tiles long, so spreading one, two and then
+        four steps at a time is enough. The masks remove bits that wrapped around to another row
+        when shifting towards higher (leftShiftMask) and lower (rightShiftMask) bits.
+     */
+    private static long spreadAlongLine(long tiles, final int shift, final long leftShiftMask, final long rightShiftMask) {
+        final long leftShiftMask2 = leftShiftMask & (leftShiftMask << shift);
+        final long rightShiftMask2 = rightShiftMask & (rightShiftMask >>> shift);
+        final long leftShiftMask4 = leftShiftMask2 & (leftShiftMask2 << (2 * shift));
+        final long rightShiftMask4 = rightShiftMask2 & (rightShiftMask2 >>> (2 * shift));
+        tiles |= ((tiles << shift) & leftShiftMask) | ((tiles >>> shift) & rightShiftMask);
+        tiles |= ((tiles << (2 * shift)) & leftShiftMask2) | ((tiles >>> (2 * shift)) & rightShiftMask2);
+        tiles |= ((tiles << (4 * shift)) & leftShiftMask4) | ((tiles >>> (4 * shift)) & rightShiftMask4);
+        return tiles;
     }
 
     public boolean edgePlayed() {
         return edgePlayed;
     }
 
+    /**
+     * Packs the corner and edge played flags into an int, for use with restore().
+     */
+    int getFlags() {
+        return (cornerPlayed ? 0x1 : 0) | (edgePlayed ? 0x2 : 0);
+    }
+
+    /**
+     * Resets the analytics to a state previously read with getFlags().
+     */
+    void restore(final int flags) {
+        cornerPlayed = (flags & 0x1) != 0;
+        edgePlayed = (flags & 0x2) != 0;
+        invalidateStability();
+    }
+
     public boolean cornerPlayed() {
         return cornerPlayed;
     }
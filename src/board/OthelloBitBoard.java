@@ -10,6 +10,7 @@ import java.util.List;
  *
  */
 public class OthelloBitBoard extends OthelloBoard {
+	private static final int WIDTH = 8; // Tiles per row, the shift between vertically adjacent bits.
     /*
         Bitmasks used for fast determination of valid moves:
      */
@@ -22,10 +23,16 @@ public class OthelloBitBoard extends OthelloBoard {
     private long darkTiles; // Bitmask of all tiles currently held by the dark player.
     /*
         The set of legal moves available to each player on the current board configuration.
+        Each mask is computed the first time it is asked for and cached until the next move.
+        UNKNOWN_MOVES can never be a real mask, since the four centre tiles are never empty.
+        They are volatile because a board can be read by several search threads at once, and
+        a long that isn't volatile may be seen half written (JLS 17.7).
      */
-	private long legalDarkMoves, legalLightMoves;
+	private static final long UNKNOWN_MOVES = -1L;
+	private volatile long legalDarkMoves, legalLightMoves;
 
     private BitBoardAnalytics analytics;
+    private UndoStack history; // Only allocated for boards searched in place, see undoMove().
 
 	public OthelloBitBoard() {
 		super(8, true);
@@ -33,10 +40,10 @@ public class OthelloBitBoard extends OthelloBoard {
         analytics.initializeAdjacentTiles();
 		lightTiles = 0x0000001008000000L;
 		darkTiles =  0x0000000810000000L;
-		legalDarkMoves = 0L;
-		legalLightMoves = 0L;
-		updateLegalMoves();
+		legalDarkMoves = UNKNOWN_MOVES;
+		legalLightMoves = UNKNOWN_MOVES;
 		precedingMove = null;
+		zobristKey = computeZobristKey();
 	}
 
 	public OthelloBitBoard(final OthelloBitBoard old) {
@@ -49,6 +56,27 @@ public class OthelloBitBoard extends OthelloBoard {
 		darkScore = old.darkScore;
 		lightScore = old.lightScore;
 		precedingMove = old.precedingMove;
+		zobristKey = old.zobristKey;
+	}
+
+	/**
+	 * Copies old into a board that records every move made on it, so that the
+	 * moves can be taken back with undoMove() instead of copying the board for
+	 * each position visited by a search. No search uses it yet: TDMCNode.getChildren()
+	 * still copies the board for each child, since the nodes and their boards are kept
+	 * in the SearchTree between searches, and EndgameSolver plays its moves on bare
+	 * bitboards, which need no undoing.
+	 */
+	public OthelloBitBoard(final OthelloBitBoard old, final boolean undoable) {
+		this(old);
+		if (undoable) {
+			history = new UndoStack();
+		}
+	}
+
+	@Override
+	public OthelloBoard copy() {
+		return new OthelloBitBoard(this);
 	}
 
 	/**
@@ -68,42 +96,16 @@ public class OthelloBitBoard extends OthelloBoard {
 	
 	/**
 	 * Given a move, which is assumed to be valid, changes owner of
-     * the appropriate tiles.
-	 * TODO: could use bitops instead for efficiency gains.
+	 * the appropriate tiles.
 	 * @param m: the move
 	 * @param playerColor: color of the player making the move.
-	 * @return The number of tiles that changed colour.
+	 * @return The tiles that changed colour.
 	 */
-	private int updateTileOwners(final Move m, final TileState playerColor) {
+	private long updateTileOwners(final Move m, final TileState playerColor) {
 		long playerTiles = (playerColor == TileState.DARK) ? darkTiles : lightTiles;
 		long opponentTiles = (playerColor == TileState.DARK) ? lightTiles : darkTiles;
-		long tilesToUpdate = 0L; // A mask of tiles that change colour.
-        // Find tiles to change owner in each direction:
-		for (int[] direction : DIRECTIONS) {
-			int x = m.row(), y = m.col();
-			long candidateTiles = 0L; // A mask of positions that might be changing colour.
-			boolean opponentTokens = false; // Found an opponent-owned tile along this direction.
-            boolean directionFinished = false; // Finished scanning this direction from x,y.
-			while (!directionFinished) {
-				x += direction[0];
-				y += direction[1];
-				long pos = bitRepOf(x, y); // A bit representation of row=x and col=y
-				if (!outsideBoard(x, y)) {
-					if ((pos & opponentTiles) != 0) {
-						opponentTokens = true;
-						candidateTiles |= pos;
-					} else if ((pos & playerTiles) != 0 && opponentTokens) {
-						tilesToUpdate |= candidateTiles;
-						directionFinished = true;
-					} else { // Either empty or adjacent to move and the same colour as the move.
-						directionFinished = true;
-					}
-				} else {
-					directionFinished = true;
-				}
-			}
-		}
-		
+		long tilesToUpdate = getFlips(m.bitRep(), playerTiles, opponentTiles); // A mask of tiles that change colour.
+
 		playerTiles |= tilesToUpdate; // Add the tiles that changed owner to the player.
 		opponentTiles &= ~tilesToUpdate; // Remove the tiles that changed owned from the opponent.
 		if (playerColor == TileState.DARK) {
@@ -113,8 +115,73 @@ public class OthelloBitBoard extends OthelloBoard {
 			lightTiles = playerTiles;
 			darkTiles = opponentTiles;
 		}
-		
-		return Long.bitCount(tilesToUpdate);
+
+		return tilesToUpdate;
+	}
+
+	/*
+	    Adds the tile placed by the move and the tiles it flipped to the Zobrist key.
+	 */
+	private void updateZobristKey(final Move m, final TileState playerColor, final long flips) {
+		long key = zobristKey ^ Zobrist.tileKey(playerColor, Long.numberOfTrailingZeros(m.bitRep()));
+		for (long remaining = flips; remaining != 0L; remaining &= remaining - 1) {
+			key ^= Zobrist.FLIP_TILE[Long.numberOfTrailingZeros(remaining)];
+		}
+		zobristKey = key;
+	}
+
+	/**
+	 * Returns the mask of opponent tiles that are flipped when a tile is placed on move
+	 * (0 if the move isn't legal for the owner of playerTiles).
+	 */
+	public static long getFlips(final long move, final long playerTiles, final long opponentTiles) {
+		// UP:
+		return getFlipsShiftRight(WIDTH, DOWN_MASK, move, playerTiles, opponentTiles)
+				// DOWN:
+				| getFlipsShiftLeft(WIDTH, UP_MASK, move, playerTiles, opponentTiles)
+				// LEFT:
+				| getFlipsShiftRight(1, RIGHT_MASK, move, playerTiles, opponentTiles)
+				// RIGHT:
+				| getFlipsShiftLeft(1, LEFT_MASK, move, playerTiles, opponentTiles)
+				// UP LEFT:
+				| getFlipsShiftRight(WIDTH + 1, RIGHT_MASK & DOWN_MASK, move, playerTiles, opponentTiles)
+				// UP RIGHT:
+				| getFlipsShiftRight(WIDTH - 1, LEFT_MASK & DOWN_MASK, move, playerTiles, opponentTiles)
+				// DOWN LEFT:
+				| getFlipsShiftLeft(WIDTH - 1, RIGHT_MASK & UP_MASK, move, playerTiles, opponentTiles)
+				// DOWN RIGHT:
+				| getFlipsShiftLeft(WIDTH + 1, LEFT_MASK & UP_MASK, move, playerTiles, opponentTiles);
+	}
+
+	/*
+	    Returns the tiles flipped in the direction of a left shift. At most six opponent
+	    tiles fit between the move and the tile that brackets them, so the fill is unrolled
+	    six times instead of looping.
+	 */
+	private static long getFlipsShiftLeft(final int SHIFT, final long MASK, final long move, final long currentBoard, final long opponentBoard) {
+		final long opponentInDirection = opponentBoard & MASK;
+		long flips = (move << SHIFT) & opponentInDirection;
+		flips |= (flips << SHIFT) & opponentInDirection;
+		flips |= (flips << SHIFT) & opponentInDirection;
+		flips |= (flips << SHIFT) & opponentInDirection;
+		flips |= (flips << SHIFT) & opponentInDirection;
+		flips |= (flips << SHIFT) & opponentInDirection;
+		// The run of opponent tiles only flips if one of the player's tiles closes it:
+		return ((flips << SHIFT) & MASK & currentBoard) != 0L ? flips : 0L;
+	}
+
+	/*
+	    Returns the tiles flipped in the direction of a right shift. See getFlipsShiftLeft.
+	 */
+	private static long getFlipsShiftRight(final int SHIFT, final long MASK, final long move, final long currentBoard, final long opponentBoard) {
+		final long opponentInDirection = opponentBoard & MASK;
+		long flips = (move >>> SHIFT) & opponentInDirection;
+		flips |= (flips >>> SHIFT) & opponentInDirection;
+		flips |= (flips >>> SHIFT) & opponentInDirection;
+		flips |= (flips >>> SHIFT) & opponentInDirection;
+		flips |= (flips >>> SHIFT) & opponentInDirection;
+		flips |= (flips >>> SHIFT) & opponentInDirection;
+		return ((flips >>> SHIFT) & MASK & currentBoard) != 0L ? flips : 0L;
 	}
 
 	@Override
@@ -148,7 +215,7 @@ public class OthelloBitBoard extends OthelloBoard {
 		}
 	}
 
-	private long getLegalMovesShiftLeft(final long SHIFT, final long MASK, final long currentBoard, final long opponentBoard, final long emptyBoard) {
+	private static long getLegalMovesShiftLeft(final long SHIFT, final long MASK, final long currentBoard, final long opponentBoard, final long emptyBoard) {
 		long legal = 0L;
 		long potentialMoves = (currentBoard << SHIFT) & MASK & opponentBoard;
 		while (potentialMoves != 0L) {
@@ -159,7 +226,7 @@ public class OthelloBitBoard extends OthelloBoard {
 		return legal;
 	}
 
-	private long getLegalMovesShiftRight(final long SHIFT, final long MASK, final long currentBoard, final long opponentBoard, final long emptyBoard) {
+	private static long getLegalMovesShiftRight(final long SHIFT, final long MASK, final long currentBoard, final long opponentBoard, final long emptyBoard) {
 		long legal = 0L;
 		long potentialMoves = (currentBoard >> SHIFT) & MASK & opponentBoard;
 		while (potentialMoves != 0L) {
@@ -175,6 +242,13 @@ public class OthelloBitBoard extends OthelloBoard {
         return analytics.getStableTileCount(playerColor, darkTiles, lightTiles);
 	}
 
+	/*
+	    Returns the tiles of the player with colour playerColor that can no longer change colour.
+	 */
+	public long getStableTilesAsBits(TileState playerColor) {
+		return analytics.getStableTiles(playerColor, darkTiles, lightTiles);
+	}
+
 	/*
 	    Returns the owner of the tile at pos (dark, light, or empty).
 	    It is assumed that pos has exactly one bit set to zero.
@@ -199,7 +273,7 @@ public class OthelloBitBoard extends OthelloBoard {
      * colour playerColor can make on the current board.
 	 */
 	public List<Move> getValidMoves(TileState playerColor) {
-		final long validMoveMask = playerColor == TileState.DARK ? legalDarkMoves : legalLightMoves;
+		final long validMoveMask = getValidMovesAsBits(playerColor);
 		Move[] validMoves = new Move[Long.bitCount(validMoveMask)];
 		int counter = 0;
 		int highestOneIndex = 64 - Long.numberOfLeadingZeros(validMoveMask);
@@ -217,7 +291,25 @@ public class OthelloBitBoard extends OthelloBoard {
 	    can make on the current board as a bitmask.
 	 */
 	public long getValidMovesAsBits(TileState playerColor) {
-		return playerColor == TileState.DARK ? legalDarkMoves : legalLightMoves;
+		/*
+		    The cache is filled in with a single volatile write, so boards shared between
+		    search threads at worst compute the same mask twice.
+		 */
+		if (playerColor == TileState.DARK) {
+			long moves = legalDarkMoves;
+			if (moves == UNKNOWN_MOVES) {
+				moves = computeLegalMoves(darkTiles, lightTiles);
+				legalDarkMoves = moves;
+			}
+			return moves;
+		} else {
+			long moves = legalLightMoves;
+			if (moves == UNKNOWN_MOVES) {
+				moves = computeLegalMoves(lightTiles, darkTiles);
+				legalLightMoves = moves;
+			}
+			return moves;
+		}
 	}
 
 	@Override
@@ -232,8 +324,7 @@ public class OthelloBitBoard extends OthelloBoard {
 
 	@Override
 	public boolean isValidMove(final Move m, final TileState playerColor) {
-		long validMoves = playerColor == TileState.DARK ? legalDarkMoves : legalLightMoves;
-		return (validMoves & m.bitRep()) != 0L;
+		return (getValidMovesAsBits(playerColor) & m.bitRep()) != 0L;
 	}
 
 	@Override
@@ -242,6 +333,10 @@ public class OthelloBitBoard extends OthelloBoard {
 			return 0;
 		}
 		long moveAsBits = m.bitRep();
+		if (history != null) {
+			history.push(m, darkScore, lightScore, legalDarkMoves, legalLightMoves,
+					analytics.getFlags(), precedingMove, zobristKey);
+		}
 
 		// Has a tile on a corner of the board been played?
 		if (!analytics.cornerPlayed() && analytics.isCorner(moveAsBits)) {;
@@ -255,24 +350,69 @@ public class OthelloBitBoard extends OthelloBoard {
 		precedingMove = m;
 
 		int flipped = 1; // The number of tiles added to the player's possession by their move.
+		long flips; // The tiles taken from the opponent by the move.
 		if (playerColor == TileState.LIGHT) {
 			lightTiles |= moveAsBits;
-			flipped += updateTileOwners(m, TileState.LIGHT);
+			flips = updateTileOwners(m, TileState.LIGHT);
+			flipped += Long.bitCount(flips);
 			lightScore += flipped;
 			darkScore -= (flipped - 1);
 		} else {
 			darkTiles |= moveAsBits;
-			flipped += updateTileOwners(m, TileState.DARK);
+			flips = updateTileOwners(m, TileState.DARK);
+			flipped += Long.bitCount(flips);
 			darkScore += flipped;
 			lightScore -= (flipped - 1);
 		}
+		if (history != null) {
+			history.flips[history.size - 1] = flips;
+		}
+		updateZobristKey(m, playerColor, flips);
 
-		updateLegalMoves();
-        analytics.updateStableBoard(darkTiles, lightTiles);
+		legalDarkMoves = UNKNOWN_MOVES;
+		legalLightMoves = UNKNOWN_MOVES;
+        analytics.invalidateStability();
 
 		return flipped;
 	}
 
+	/**
+	 * Takes back the last move made on this board, restoring it to the exact state
+	 * it was in before that move. Only boards created with the undoable copy
+	 * constructor keep the history needed for this.
+	 */
+	public void undoMove() {
+		if (history == null || history.size == 0) {
+			throw new IllegalStateException("No move to undo on this board.");
+		}
+		int top = --history.size;
+		long moveAsBits = history.moves[top].bitRep();
+		long flips = history.flips[top];
+		if ((darkTiles & moveAsBits) != 0L) {
+			darkTiles &= ~(moveAsBits | flips);
+			lightTiles |= flips;
+		} else {
+			lightTiles &= ~(moveAsBits | flips);
+			darkTiles |= flips;
+		}
+		darkScore = history.darkScores[top];
+		lightScore = history.lightScores[top];
+		legalDarkMoves = history.legalDarkMoves[top];
+		legalLightMoves = history.legalLightMoves[top];
+		analytics.restore(history.analyticsFlags[top]);
+		precedingMove = history.precedingMoves[top];
+		zobristKey = history.zobristKeys[top];
+		history.moves[top] = null;
+		history.precedingMoves[top] = null;
+	}
+
+	/**
+	 * Returns the number of moves that can currently be taken back with undoMove().
+	 */
+	public int undoableMoves() {
+		return history == null ? 0 : history.size;
+	}
+
 	@Override
 	public void print() {
 		System.out.print("  ");
@@ -298,39 +438,27 @@ public class OthelloBitBoard extends OthelloBoard {
 		}
 	}
 
-	private void updateLegalMoves() {
-		this.legalDarkMoves = updateLegalMoves(TileState.DARK);
-		this.legalLightMoves = updateLegalMoves(TileState.LIGHT);
-	}
-	
 	/**
-	 * Returns the legal moves available to the player with colour playerColor as a bit mask.
+	 * Returns the legal moves available to the owner of playerTiles as a bit mask.
 	 */
-	private long updateLegalMoves(final TileState playerColor) {
-		long playerTiles = playerColor == TileState.DARK ? darkTiles : lightTiles;
-		long opponentTiles = playerColor == TileState.DARK ? lightTiles : darkTiles;
-		long emptyTiles = ~(lightTiles | darkTiles);
-		long[] legalArr = new long[8];
-		
+	public static long computeLegalMoves(final long playerTiles, final long opponentTiles) {
+		long emptyTiles = ~(playerTiles | opponentTiles);
 		// UP:
-		legalArr[0] = getLegalMovesShiftRight(boardSize, DOWN_MASK, playerTiles, opponentTiles, emptyTiles);
-		// DOWN:
-		legalArr[1] = getLegalMovesShiftLeft(boardSize, UP_MASK, playerTiles, opponentTiles, emptyTiles);
-		// LEFT:
-		legalArr[2] = getLegalMovesShiftRight(1L, RIGHT_MASK, playerTiles, opponentTiles, emptyTiles);
-		// RIGHT:
-		legalArr[3] = getLegalMovesShiftLeft(1L, LEFT_MASK, playerTiles, opponentTiles, emptyTiles);
-		// UP LEFT:
-		legalArr[4] = getLegalMovesShiftRight(boardSize + 1L, RIGHT_MASK & DOWN_MASK, playerTiles, opponentTiles, emptyTiles);
-		// UP RIGHT:
-		legalArr[5] = getLegalMovesShiftRight(boardSize - 1L, LEFT_MASK & DOWN_MASK, playerTiles, opponentTiles, emptyTiles);
-		// DOWN LEFT:
-		legalArr[6] = getLegalMovesShiftLeft(boardSize - 1L, RIGHT_MASK & UP_MASK, playerTiles, opponentTiles, emptyTiles);
-		// DOWN RIGHT:
-		legalArr[7] = getLegalMovesShiftLeft(boardSize + 1L, LEFT_MASK & UP_MASK, playerTiles, opponentTiles, emptyTiles);
-		
-		return (legalArr[0] | legalArr[1] | legalArr[2] | legalArr[3]
-				| legalArr[4] | legalArr[5] | legalArr[6] | legalArr[7]);
+		return getLegalMovesShiftRight(WIDTH, DOWN_MASK, playerTiles, opponentTiles, emptyTiles)
+				// DOWN:
+				| getLegalMovesShiftLeft(WIDTH, UP_MASK, playerTiles, opponentTiles, emptyTiles)
+				// LEFT:
+				| getLegalMovesShiftRight(1L, RIGHT_MASK, playerTiles, opponentTiles, emptyTiles)
+				// RIGHT:
+				| getLegalMovesShiftLeft(1L, LEFT_MASK, playerTiles, opponentTiles, emptyTiles)
+				// UP LEFT:
+				| getLegalMovesShiftRight(WIDTH + 1L, RIGHT_MASK & DOWN_MASK, playerTiles, opponentTiles, emptyTiles)
+				// UP RIGHT:
+				| getLegalMovesShiftRight(WIDTH - 1L, LEFT_MASK & DOWN_MASK, playerTiles, opponentTiles, emptyTiles)
+				// DOWN LEFT:
+				| getLegalMovesShiftLeft(WIDTH - 1L, RIGHT_MASK & UP_MASK, playerTiles, opponentTiles, emptyTiles)
+				// DOWN RIGHT:
+				| getLegalMovesShiftLeft(WIDTH + 1L, LEFT_MASK & UP_MASK, playerTiles, opponentTiles, emptyTiles);
 	}
 
 	public boolean edgePlayed() {
@@ -340,4 +468,35 @@ public class OthelloBitBoard extends OthelloBoard {
 	public boolean cornerPlayed() {
         return analytics.cornerPlayed();
     }
+
+	/*
+	    Preallocated record of the moves made on an undoable board. A game never has
+	    more than 60 moves, so the arrays never need to grow.
+	 */
+	private static final class UndoStack {
+		private static final int CAPACITY = 64;
+		private final Move[] moves = new Move[CAPACITY];
+		private final Move[] precedingMoves = new Move[CAPACITY];
+		private final long[] flips = new long[CAPACITY];
+		private final long[] legalDarkMoves = new long[CAPACITY];
+		private final long[] legalLightMoves = new long[CAPACITY];
+		private final long[] zobristKeys = new long[CAPACITY];
+		private final int[] darkScores = new int[CAPACITY];
+		private final int[] lightScores = new int[CAPACITY];
+		private final int[] analyticsFlags = new int[CAPACITY];
+		private int size = 0;
+
+		private void push(final Move m, final int darkScore, final int lightScore, final long legalDark,
+				final long legalLight, final int flags, final Move preceding, final long key) {
+			moves[size] = m;
+			darkScores[size] = darkScore;
+			lightScores[size] = lightScore;
+			legalDarkMoves[size] = legalDark;
+			legalLightMoves[size] = legalLight;
+			analyticsFlags[size] = flags;
+			precedingMoves[size] = preceding;
+			zobristKeys[size] = key;
+			size++;
+		}
+	}
 }
@@ -18,6 +18,7 @@ public abstract class OthelloBoard {
 	protected final int boardSize;
 	protected Move precedingMove;
 	protected int darkScore = 2, lightScore = 2;
+	protected long zobristKey; // Zobrist key of the tiles on the board, without the player to move.
 	
 	public OthelloBoard(int size) {
 		boardSize = size;
@@ -32,6 +33,11 @@ public abstract class OthelloBoard {
 		corners.add(MovePool.pool[MovePool.pool.length - 1]);
 	}
 		
+	/**
+	 * Returns an independent copy of this board.
+	 */
+	public abstract OthelloBoard copy();
+
 	public abstract List<Move> getAdjacentTiles(final Move m, final TileState color);
 	
 	public int getBoardSize() {
@@ -45,6 +51,41 @@ public abstract class OthelloBoard {
 		return corners;
 	}
 	
+	/**
+	 * Returns the Zobrist key of the tiles on the board, assuming that the player
+	 * who did not make the last move is the one to move.
+	 */
+	public long getZobristKey() {
+		return getZobristKey(precedingMove == null ? TileState.DARK : getStateOf(precedingMove).opposite());
+	}
+
+	/**
+	 * Returns the Zobrist key of the tiles on the board with the player with colour
+	 * playerToMove to move. Positions reached through a pass need the explicit colour.
+	 */
+	public long getZobristKey(final TileState playerToMove) {
+		return playerToMove == TileState.LIGHT ? zobristKey ^ Zobrist.LIGHT_TO_MOVE : zobristKey;
+	}
+
+	/**
+	 * Computes the Zobrist key of the tiles on the board from scratch. Boards set
+	 * zobristKey with this once and then update it as moves are made.
+	 */
+	protected long computeZobristKey() {
+		long key = 0L;
+		for (int row = 0; row < boardSize; row++) {
+			for (int col = 0; col < boardSize; col++) {
+				key ^= Zobrist.tileKey(getStateOf(MovePool.move(row, col)), row*boardSize + col);
+			}
+		}
+		return key;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int)(zobristKey ^ (zobristKey >>> 32));
+	}
+
 	public TileState getHighestScorer() {
 		return darkScore > lightScore ? TileState.DARK: TileState.LIGHT;
 	}
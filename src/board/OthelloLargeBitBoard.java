@@ -0,0 +1,421 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bitboard for Othello boards of any size up to 26x26, for the sizes that don't fit in
+ * the single long of OthelloBitBoard. Each player's tiles are held in a long[] with one
+ * word per row (the tile in column col of a row is bit col of its word), so shifting a
+ * row sideways moves tiles between columns and stepping to the next word moves them
+ * between rows. Legal moves and flips are found by shifting whole rows at a time
+ * instead of looking at one tile at a time like OthelloRegularBoard.
+ */
+public class OthelloLargeBitBoard extends OthelloBoard {
+	private final long rowMask; // The bits of a row word that are on the board.
+	private final long edgeColumns; // The bits of a row word in the first and last column.
+
+	private final long[] darkRows, lightRows; // The tiles held by each player, one word per row.
+	/*
+	    The legal moves of each player, one word per row. Computed the first time they are
+	    asked for and cached until the next move.
+	 */
+	private final long[] legalDarkRows, legalLightRows;
+	private boolean legalDarkKnown = false, legalLightKnown = false;
+	private boolean edgePlayed = false, //Has an edge been played?
+			cornerPlayed = false; //Has a corner been played?
+
+	public OthelloLargeBitBoard(final int size) {
+		super(size, true);
+		rowMask = (0x1L << size) - 1;
+		edgeColumns = 0x1L | (0x1L << (size - 1));
+		darkRows = new long[size];
+		lightRows = new long[size];
+		legalDarkRows = new long[size];
+		legalLightRows = new long[size];
+		lightRows[size/2 - 1] |= 0x1L << (size/2 - 1);
+		lightRows[size/2] |= 0x1L << (size/2);
+		darkRows[size/2] |= 0x1L << (size/2 - 1);
+		darkRows[size/2 - 1] |= 0x1L << (size/2);
+		zobristKey = computeZobristKey();
+	}
+
+	public OthelloLargeBitBoard(final OthelloLargeBitBoard old) {
+		super(old.boardSize);
+		rowMask = old.rowMask;
+		edgeColumns = old.edgeColumns;
+		darkRows = old.darkRows.clone();
+		lightRows = old.lightRows.clone();
+		legalDarkRows = old.legalDarkRows.clone();
+		legalLightRows = old.legalLightRows.clone();
+		legalDarkKnown = old.legalDarkKnown;
+		legalLightKnown = old.legalLightKnown;
+		darkScore = old.darkScore;
+		lightScore = old.lightScore;
+		edgePlayed = old.edgePlayed;
+		cornerPlayed = old.cornerPlayed;
+		precedingMove = old.precedingMove;
+		zobristKey = old.zobristKey;
+	}
+
+	@Override
+	public OthelloBoard copy() {
+		return new OthelloLargeBitBoard(this);
+	}
+
+	/**
+	 * Sets this board to the same position as old, which must be the same size, without
+	 * allocating anything. For boards that are played on over and over, like playouts.
+	 */
+	public void copyFrom(final OthelloLargeBitBoard old) {
+		if (old.boardSize != boardSize) {
+			throw new IllegalArgumentException("Can't copy a " + old.boardSize + "x" + old.boardSize
+					+ " board into a " + boardSize + "x" + boardSize + " board.");
+		}
+		System.arraycopy(old.darkRows, 0, darkRows, 0, boardSize);
+		System.arraycopy(old.lightRows, 0, lightRows, 0, boardSize);
+		System.arraycopy(old.legalDarkRows, 0, legalDarkRows, 0, boardSize);
+		System.arraycopy(old.legalLightRows, 0, legalLightRows, 0, boardSize);
+		legalDarkKnown = old.legalDarkKnown;
+		legalLightKnown = old.legalLightKnown;
+		darkScore = old.darkScore;
+		lightScore = old.lightScore;
+		edgePlayed = old.edgePlayed;
+		cornerPlayed = old.cornerPlayed;
+		precedingMove = old.precedingMove;
+		zobristKey = old.zobristKey;
+	}
+
+	/*
+	    Shifts the tiles of a row one column in direction colStep (-1, 0 or 1), dropping
+	    the tiles that fall off the board.
+	 */
+	private long shiftColumns(final long row, final int colStep) {
+		if (colStep > 0) {
+			return (row << 1) & rowMask;
+		} else if (colStep < 0) {
+			return row >>> 1;
+		} else {
+			return row;
+		}
+	}
+
+	/**
+	 * Computes the legal moves of the owner of player into legal. For each direction, the
+	 * run of opponent tiles next to the player's tiles of a row is followed one row (or,
+	 * for the horizontal directions, one column) at a time for the whole row at once,
+	 * and every empty tile the run reaches is a legal move.
+	 */
+	private void computeLegalMoves(final long[] player, final long[] opponent, final long[] legal) {
+		Arrays.fill(legal, 0L);
+		for (int[] direction : DIRECTIONS) {
+			final int rowStep = direction[0], colStep = direction[1];
+			for (int row = 0; row < boardSize; row++) {
+				int next = row + rowStep;
+				if (outsideBoard(next)) {
+					continue;
+				}
+				long run = shiftColumns(player[row], colStep) & opponent[next];
+				while (run != 0L) {
+					int after = next + rowStep;
+					if (outsideBoard(after)) {
+						break;
+					}
+					long step = shiftColumns(run, colStep);
+					legal[after] |= step & ~(player[after] | opponent[after]);
+					run = step & opponent[after];
+					next = after;
+				}
+			}
+		}
+	}
+
+	public boolean equals(Object rhs) {
+		if (rhs == null || !(rhs instanceof OthelloLargeBitBoard)) {
+			return false;
+		}
+		OthelloLargeBitBoard b = (OthelloLargeBitBoard)rhs;
+		return Arrays.equals(darkRows, b.darkRows) && Arrays.equals(lightRows, b.lightRows);
+	}
+
+	/**
+	 * Flips the opponent tiles captured by a tile of the player placed at m, which is
+	 * assumed to be a valid move, and updates the Zobrist key for them.
+	 * @return The number of tiles that changed colour.
+	 */
+	private int flipTiles(final Move m, final long[] player, final long[] opponent) {
+		int flipped = 0;
+		for (int[] direction : DIRECTIONS) {
+			final int rowStep = direction[0], colStep = direction[1];
+			int row = m.row() + rowStep;
+			long tile = shiftColumns(0x1L << m.col(), colStep);
+			int opponentTiles = 0; // How many opponent tiles along this direction
+			while (!outsideBoard(row) && (opponent[row] & tile) != 0L) {
+				opponentTiles++;
+				row += rowStep;
+				tile = shiftColumns(tile, colStep);
+			}
+			if (opponentTiles == 0 || outsideBoard(row) || (player[row] & tile) == 0L) {
+				continue;
+			}
+			// Walk back over the run towards the move, flipping it:
+			for (int i = 0; i < opponentTiles; i++) {
+				row -= rowStep;
+				tile = shiftColumns(tile, -colStep);
+				opponent[row] &= ~tile;
+				player[row] |= tile;
+				zobristKey ^= Zobrist.FLIP_TILE[row*boardSize + Long.numberOfTrailingZeros(tile)];
+			}
+			flipped += opponentTiles;
+		}
+		return flipped;
+	}
+
+	@Override
+	public List<Move> getAdjacentTiles(final Move m, final TileState color) {
+		List<Move> adjacent = new ArrayList<>(8);
+		for (int[] direction : DIRECTIONS) {
+			int row = m.row() + direction[0], col = m.col() + direction[1];
+			if (!outsideBoard(row, col) && getStateOf(row, col) == color) {
+				adjacent.add(MovePool.move(row, col));
+			}
+		}
+		return adjacent;
+	}
+
+	private long[] getLegalRowsOf(final TileState playerColor) {
+		if (playerColor == TileState.DARK) {
+			if (!legalDarkKnown) {
+				computeLegalMoves(darkRows, lightRows, legalDarkRows);
+				legalDarkKnown = true;
+			}
+			return legalDarkRows;
+		} else {
+			if (!legalLightKnown) {
+				computeLegalMoves(lightRows, darkRows, legalLightRows);
+				legalLightKnown = true;
+			}
+			return legalLightRows;
+		}
+	}
+
+	/**
+	 * Counts the tiles of the player with colour playerColor that can no longer change
+	 * colour. A tile is safe along one of the four lines through it if the line is full,
+	 * or if a neighbour on the line is off the board or a stable tile of the same colour;
+	 * stability spreads from the edges and filled lines until nothing changes.
+	 */
+	@Override
+	public int getStableTileCount(final TileState playerColor) {
+		final long[] player = playerColor == TileState.DARK ? darkRows : lightRows;
+		final long[] opponent = playerColor == TileState.DARK ? lightRows : darkRows;
+		final int last = boardSize - 1;
+		long fullColumns = rowMask;
+		long[] empty = new long[boardSize];
+		for (int row = 0; row < boardSize; row++) {
+			empty[row] = ~(player[row] | opponent[row]) & rowMask;
+			fullColumns &= ~empty[row];
+		}
+		// Spread every empty tile along its diagonal and anti-diagonal, down and then up:
+		long[] openDiagonals = new long[boardSize], openAntiDiagonals = new long[boardSize];
+		openDiagonals[0] = empty[0];
+		openAntiDiagonals[0] = empty[0];
+		for (int row = 1; row < boardSize; row++) {
+			openDiagonals[row] = empty[row] | shiftColumns(openDiagonals[row - 1], 1);
+			openAntiDiagonals[row] = empty[row] | shiftColumns(openAntiDiagonals[row - 1], -1);
+		}
+		long diagonalsUp = empty[last], antiDiagonalsUp = empty[last];
+		for (int row = last - 1; row >= 0; row--) {
+			diagonalsUp = empty[row] | shiftColumns(diagonalsUp, -1);
+			antiDiagonalsUp = empty[row] | shiftColumns(antiDiagonalsUp, 1);
+			openDiagonals[row] |= diagonalsUp;
+			openAntiDiagonals[row] |= antiDiagonalsUp;
+		}
+
+		long[] stable = new long[boardSize];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int row = 0; row < boardSize; row++) {
+				long above = row > 0 ? stable[row - 1] : 0L;
+				long below = row < last ? stable[row + 1] : 0L;
+				boolean borderRow = row == 0 || row == last;
+				long safeHorizontally = (empty[row] == 0L ? rowMask : edgeColumns)
+						| shiftColumns(stable[row], 1) | shiftColumns(stable[row], -1);
+				long safeVertically = fullColumns | (borderRow ? rowMask : 0L) | above | below;
+				long safeDiagonally = ~openDiagonals[row] | (borderRow ? rowMask : edgeColumns)
+						| shiftColumns(above, 1) | shiftColumns(below, -1);
+				long safeAntiDiagonally = ~openAntiDiagonals[row] | (borderRow ? rowMask : edgeColumns)
+						| shiftColumns(above, -1) | shiftColumns(below, 1);
+				long newStable = stable[row]
+						| (player[row] & safeHorizontally & safeVertically & safeDiagonally & safeAntiDiagonally);
+				if (newStable != stable[row]) {
+					stable[row] = newStable;
+					changed = true;
+				}
+			}
+		}
+		int numStable = 0;
+		for (long row : stable) {
+			numStable += Long.bitCount(row);
+		}
+		return numStable;
+	}
+
+	private TileState getStateOf(final int row, final int col) {
+		long tile = 0x1L << col;
+		if ((darkRows[row] & tile) != 0L) {
+			return TileState.DARK;
+		} else if ((lightRows[row] & tile) != 0L) {
+			return TileState.LIGHT;
+		} else {
+			return TileState.EMPTY;
+		}
+	}
+
+	@Override
+	public TileState getStateOf(final Move tile) {
+		return getStateOf(tile.row(), tile.col());
+	}
+
+	@Override
+	public List<Move> getValidMoves(final TileState playerColor) {
+		final long[] legal = getLegalRowsOf(playerColor);
+		List<Move> validMoves = new ArrayList<>();
+		for (int row = 0; row < boardSize; row++) {
+			for (long moves = legal[row]; moves != 0L; moves &= moves - 1) {
+				validMoves.add(MovePool.move(row, Long.numberOfTrailingZeros(moves)));
+			}
+		}
+		return validMoves;
+	}
+
+	/**
+	 * Returns the number of moves the player with colour playerColor can make, without
+	 * building the list getValidMoves returns.
+	 */
+	public int countValidMoves(final TileState playerColor) {
+		int count = 0;
+		for (long row : getLegalRowsOf(playerColor)) {
+			count += Long.bitCount(row);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the move at position index (in row order) among the moves the player with
+	 * colour playerColor can make, or null if there are no more than index moves.
+	 */
+	public Move getValidMove(final TileState playerColor, int index) {
+		final long[] legal = getLegalRowsOf(playerColor);
+		for (int row = 0; row < boardSize; row++) {
+			int count = Long.bitCount(legal[row]);
+			if (index < count) {
+				long moves = legal[row];
+				for (; index > 0; index--) {
+					moves &= moves - 1;
+				}
+				return MovePool.move(row, Long.numberOfTrailingZeros(moves));
+			}
+			index -= count;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean isCorner(final int row, final int col) {
+		return (row == 0 || row == boardSize - 1)
+				&& (col == 0 || col == boardSize - 1);
+	}
+
+	@Override
+	public boolean isEdge(final int row, final int col) {
+		return row == 0 || col == 0 || row == boardSize - 1 || col == boardSize - 1;
+	}
+
+	@Override
+	public boolean isValidMove(final Move m, final TileState playerColor) {
+		if (playerColor == TileState.EMPTY) {
+			return false;
+		}
+		return (getLegalRowsOf(playerColor)[m.row()] & (0x1L << m.col())) != 0L;
+	}
+
+	@Override
+	public int makeMove(final Move m, final TileState playerColor) {
+		if (!isValidMove(m, playerColor)) {
+			return 0;
+		}
+		if (!cornerPlayed && isCorner(m.row(), m.col())) {
+			edgePlayed = true;
+			cornerPlayed = true;
+		} else if (!edgePlayed && isEdge(m.row(), m.col())) {
+			edgePlayed = true;
+		}
+		precedingMove = m;
+		zobristKey ^= Zobrist.tileKey(playerColor, m.row()*boardSize + m.col());
+
+		int flipped = 1; // The number of tiles added to the player's possession by their move.
+		if (playerColor == TileState.LIGHT) {
+			lightRows[m.row()] |= 0x1L << m.col();
+			flipped += flipTiles(m, lightRows, darkRows);
+			lightScore += flipped;
+			darkScore -= (flipped - 1);
+		} else {
+			darkRows[m.row()] |= 0x1L << m.col();
+			flipped += flipTiles(m, darkRows, lightRows);
+			darkScore += flipped;
+			lightScore -= (flipped - 1);
+		}
+		legalDarkKnown = false;
+		legalLightKnown = false;
+
+		return flipped;
+	}
+
+	@Override
+	public void print() {
+		System.out.print("  ");
+		for (char alphabet = 'A'; alphabet <= 'A' + boardSize - 1; alphabet++)
+			System.out.print("   " + alphabet);
+
+		String lineSep = "   +";
+		for (int i = 0; i < boardSize; i++) {
+			lineSep += "---+";
+		}
+		System.out.println();
+		System.out.println(lineSep);
+		for (int row = 0; row < boardSize; row++) {
+			System.out.printf("%2d |", row+1);
+			for (int col = 0; col < boardSize; col++) {
+				switch (getStateOf(row, col)) {
+				case DARK:
+					System.out.print(" D |");
+					break;
+				case LIGHT:
+					System.out.print(" L |");
+					break;
+				default:
+					System.out.print("   |");
+				}
+			}
+			System.out.println();
+			System.out.println(lineSep);
+		}
+	}
+
+	/**
+	 * Has an edge position been played yet?
+	 */
+	public boolean edgePlayed() {
+		return edgePlayed;
+	}
+
+	/**
+	 * Has a corner position been played yet?
+	 */
+	public boolean cornerPlayed() {
+		return cornerPlayed;
+	}
+}
@@ -22,7 +22,6 @@ public class OthelloRegularBoard extends OthelloBoard {
 	private int width = 4; //The game starts in the center of the board; width will always be the min of boardSize and the furthest from the center*2 move played + 1
 	private List<Move> validLightMoves = new ArrayList<>(),
 			validDarkMoves = new ArrayList<>();//,
-	private int lightScore = 2, darkScore = 2;
 	private boolean edgePlayed = false, //Has an edge been played?
 			cornerPlayed = false; //Has a corner been played?
 	
@@ -52,6 +51,7 @@ public class OthelloRegularBoard extends OthelloBoard {
 		
 		computeAdjacentTiles();
 		updateValidMoves();
+		zobristKey = computeZobristKey();
 	}
 
 	public OthelloRegularBoard(final OthelloRegularBoard oldBoard) {
@@ -74,6 +74,13 @@ public class OthelloRegularBoard extends OthelloBoard {
 		bottomRowFilled = oldBoard.bottomRowFilled;
 		cornerPlayed = oldBoard.cornerPlayed;
 		edgePlayed = oldBoard.edgePlayed;
+		precedingMove = oldBoard.precedingMove;
+		zobristKey = oldBoard.zobristKey;
+	}
+
+	@Override
+	public OthelloBoard copy() {
+		return new OthelloRegularBoard(this);
 	}
 
 	/**
@@ -218,6 +225,7 @@ public class OthelloRegularBoard extends OthelloBoard {
 			if (foundFlippable) {
 				for (Move flip : toFlip) {
 					board[flip.row()][flip.col()] = playerColor;
+					zobristKey ^= Zobrist.FLIP_TILE[flip.row()*boardSize + flip.col()];
 					flipped++;
 				}
 			}
@@ -412,6 +420,7 @@ public class OthelloRegularBoard extends OthelloBoard {
 			width += 2;
 		precedingMove = m;
 		board[m.row()][m.col()] = playerColor;
+		zobristKey ^= Zobrist.tileKey(playerColor, m.row()*boardSize + m.col());
 
 		int flipped = 1;
 		if (playerColor == TileState.LIGHT) {
@@ -0,0 +1,45 @@
+package board;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of board positions. The key of a position is the
+ * xor of the key of every tile owned by each player, plus LIGHT_TO_MOVE when it is the
+ * light player's turn, so boards can update it with a few xors as tiles change owner.
+ * Tiles are numbered row*size + col, and the tables cover every board up to 26x26.
+ */
+final class Zobrist {
+	private static final int MAX_TILES = 26 * 26;
+	static final long[] DARK_TILE = new long[MAX_TILES];
+	static final long[] LIGHT_TILE = new long[MAX_TILES];
+	static final long[] FLIP_TILE = new long[MAX_TILES]; // Changes the owner of a tile from one player to the other.
+	static final long LIGHT_TO_MOVE;
+
+	static {
+		// A fixed seed keeps keys the same from run to run.
+		SplittableRandom random = new SplittableRandom(0x0E11E110L);
+		for (int tile = 0; tile < MAX_TILES; tile++) {
+			DARK_TILE[tile] = random.nextLong();
+			LIGHT_TILE[tile] = random.nextLong();
+			FLIP_TILE[tile] = DARK_TILE[tile] ^ LIGHT_TILE[tile];
+		}
+		LIGHT_TO_MOVE = random.nextLong();
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * Returns the key of a tile owned by the player with colour color (0 for empty tiles).
+	 */
+	static long tileKey(final TileState color, final int tile) {
+		switch (color) {
+		case DARK:
+			return DARK_TILE[tile];
+		case LIGHT:
+			return LIGHT_TILE[tile];
+		default: // EMPTY
+			return 0L;
+		}
+	}
+}
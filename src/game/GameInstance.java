@@ -2,11 +2,14 @@ package game;
 public class GameInstance {
 	public static void main(String[] args) {
 		boolean humanPlayerLight = false; // Is the human player the light player?
+		boolean ponder = false; // Do the AI players think on their opponent's time?
 		int size = 8; // size of the board
 		// Parse command-line arguments:
 		for (int i = 0; i < args.length; i++) {
 			if (args[i].equals("-l")) {
 				humanPlayerLight = true;
+			} else if (args[i].equals("-p")) {
+				ponder = true;
 			} else if (args[i].equals("-n")) {
 				size = Integer.valueOf(args[i+1]);
 				if (size % 2 != 0 || !(size >= 4 && size <= 26)) {
@@ -16,7 +19,7 @@ public class GameInstance {
 			}
 		}
 		// Play the game:
-		OthelloGame game = new OthelloGame(size, humanPlayerLight);
+		OthelloGame game = new OthelloGame(size, humanPlayerLight, ponder);
 		game.play();
 		game.printOutcome();
 	}
@@ -11,34 +11,50 @@ public class OthelloGame {
 	private OthelloBoard board;
 
 	public OthelloGame(int size, boolean humanPlayerLight) {
+		this(size, humanPlayerLight, false);
+	}
+
+	/**
+	 * @param ponder: whether the AI players keep searching while their opponent is thinking.
+	 */
+	public OthelloGame(int size, boolean humanPlayerLight, boolean ponder) {
 		Move.setBoardSize(size); 
 		MovePool.initialize(size); // Object pooling for performance
 		if (humanPlayerLight) {
 			// Uncomment one of these for the AI to play against another AI:
 			//lightPlayer = new BasicAIPlayer(TileState.LIGHT);
-			lightPlayer = new TDMCAIPlayer(TileState.LIGHT);
+			//lightPlayer = new MCTSAIPlayer(TileState.LIGHT);
+			lightPlayer = size == 8 ? new TDMCAIPlayer(TileState.LIGHT) : new BasicAIPlayer(TileState.LIGHT);
 			//lightPlayer = new HumanPlayer(TileState.LIGHT);
 			if (size == 8) {
 				darkPlayer = new TDMCAIPlayer(TileState.DARK);
 				board = new OthelloBitBoard();
 			} else {
 				darkPlayer = new BasicAIPlayer(TileState.DARK);
-				board = new OthelloRegularBoard(size);
+				//darkPlayer = new MCTSAIPlayer(TileState.DARK);
+				board = new OthelloLargeBitBoard(size);
 			}
 		} else {
 			// Uncomment one of these for the AI to play against another AI:
 			//darkPlayer = new BasicAIPlayer(TileState.DARK);
-			darkPlayer = new TDMCAIPlayer(TileState.DARK);
+			//darkPlayer = new MCTSAIPlayer(TileState.DARK);
+			darkPlayer = size == 8 ? new TDMCAIPlayer(TileState.DARK) : new BasicAIPlayer(TileState.DARK);
 			//darkPlayer = new HumanPlayer(TileState.DARK);
 			if (size == 8) {
 				lightPlayer = new TDMCAIPlayer(TileState.LIGHT);
 				board = new OthelloBitBoard();
 			} else {
 				lightPlayer = new BasicAIPlayer(TileState.LIGHT);
-				board = new OthelloRegularBoard(size);
+				//lightPlayer = new MCTSAIPlayer(TileState.LIGHT);
+				board = new OthelloLargeBitBoard(size);
 			}
 		}
 		currentPlayer = darkPlayer;
+		for (Player player : new Player[] {darkPlayer, lightPlayer}) {
+			if (ponder && player instanceof TDMCAIPlayer) {
+				((TDMCAIPlayer)player).setPondering(true);
+			}
+		}
 	}
 
 	private boolean gameFinished() {
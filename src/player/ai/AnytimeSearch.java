@@ -0,0 +1,55 @@
+package player.ai;
+
+import board.OthelloBitBoard;
+import board.TileState;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A search that can be stopped at any time and still gives a move to play. It deepens a
+ * position on the calling thread until its SearchCancellation is cancelled (or its deadline
+ * passes), or the thread is interrupted. The best result so far is published after every
+ * completed depth and every better root move found by the depth being searched, so the
+ * time spent on an unfinished depth isn't wasted: getBestResult() can be read from any
+ * thread while the search runs, and search() returns it once stopped.
+ */
+public class AnytimeSearch {
+	private final TDMCNode root;
+	private final TranspositionTable table;
+	private final SearchAlgorithm algorithm;
+	private final AtomicReference<TreeSearchResult> bestResult = new AtomicReference<>(new TreeSearchResult(0, null));
+
+	/**
+	 * Creates a search of board with playerColor to move. The nodes it expands are kept in a
+	 * SearchTree of the default size, so a long search doesn't fill the memory.
+	 */
+	public AnytimeSearch(OthelloBitBoard board, TileState playerColor, TranspositionTable table,
+			SearchAlgorithm algorithm) {
+		this(new SearchTree().rootFor(board, playerColor), table, algorithm);
+	}
+
+	AnytimeSearch(TDMCNode root, TranspositionTable table, SearchAlgorithm algorithm) {
+		this.root = root;
+		this.table = table;
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Searches from startDepth until cancellation is cancelled, and returns the best result
+	 * found: the move to play, its score and the depth it was found at, which may be incomplete.
+	 */
+	public TreeSearchResult search(int startDepth, SearchCancellation cancellation) {
+		IterativeDeepeningSearcher searcher = new IterativeDeepeningSearcher(root, table, 0, startDepth,
+				null, algorithm, bestResult);
+		searcher.setCancellation(cancellation);
+		searcher.run();
+		return bestResult.get();
+	}
+
+	/**
+	 * Returns the best result published so far, whose move is null if there is none yet.
+	 */
+	public TreeSearchResult getBestResult() {
+		return bestResult.get();
+	}
+}
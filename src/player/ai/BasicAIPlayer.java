@@ -2,7 +2,6 @@ package player.ai;
 
 import board.Move;
 import board.OthelloBoard;
-import board.OthelloRegularBoard;
 import board.TileState;
 import player.Player;
 
@@ -89,7 +88,7 @@ public class BasicAIPlayer extends Player {
 	}
 
 
-	private Move estimateBestMove(OthelloRegularBoard board, TileState playerColor) {
+	private Move estimateBestMove(OthelloBoard board, TileState playerColor) {
 		return minMaxMove(board, playerColor);
 	}
 
@@ -110,7 +109,7 @@ public class BasicAIPlayer extends Player {
 		return bestMove;
 	}
 	
-	private Move minMaxMove(OthelloRegularBoard state, TileState playerColor) {
+	private Move minMaxMove(OthelloBoard state, TileState playerColor) {
         BasicNode root = new BasicNode(state, playerColor);
         List<BasicNode> children = root.getChildren();
         if (children.size() == 1) {
@@ -147,7 +146,7 @@ public class BasicAIPlayer extends Player {
 
 	@Override
 	public Move nextMove(OthelloBoard board) {
-		Move best = estimateBestMove((OthelloRegularBoard)board, this.color());
+		Move best = estimateBestMove(board, this.color());
 		return best;
 	}
 }
@@ -2,16 +2,15 @@ package player.ai;
 
 import board.Move;
 import board.OthelloBoard;
-import board.OthelloRegularBoard;
 import board.TileState;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class BasicNode extends Node {
-	private final OthelloRegularBoard board;
+	private final OthelloBoard board;
 
-	public BasicNode(OthelloRegularBoard state, TileState playerColor) {
+	public BasicNode(OthelloBoard state, TileState playerColor) {
 		super(state.getBoardSize(), playerColor);
 		board = state;
 	}
@@ -19,7 +18,7 @@ public class BasicNode extends Node {
 	public List<BasicNode> getChildren() {
 		ArrayList<BasicNode> children = new ArrayList<>();
 		for (Move m : board.getValidMoves(playerColor)) {
-			OthelloRegularBoard b = new OthelloRegularBoard(board);
+			OthelloBoard b = board.copy();
 			b.makeMove(m, playerColor);
 			children.add(new BasicNode(b, opponentColor));
 		}
@@ -35,7 +34,7 @@ public class BasicNode extends Node {
 		//weight += stableTilesWeight*(board.getStableTiles(playerColor).size());
 		//weight += mobilityWeight*(board.getFrontierTiles(playerColor).size());
 		//weight += ownTilesWeight*(board.getScoreOf(playerColor));
-		if (board.isCorner(getMove()))
+		if (board.isCorner(getMove().row(), getMove().col()))
 			weight += 30;
 		/*IntStream.range(0, board.getBoardSize()*board.getBoardSize())
 			.map(tileNum -> {
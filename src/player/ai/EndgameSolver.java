@@ -0,0 +1,364 @@
+package player.ai;
+
+import board.Move;
+import board.MovePool;
+import board.OthelloBitBoard;
+import board.TileState;
+
+/**
+ * Plays out every line of an 8x8 position to the end of the game, to find the move
+ * with the best final disc difference (or just whether it wins, loses or draws) instead
+ * of the heuristic value TDMCNode.eval() gives. This is only fast enough once there are
+ * few empty tiles left, around DEFAULT_EMPTIES.
+ *
+ * The search is a plain negamax alpha-beta over bitboards, without nodes or boards:
+ *  - moves are searched fastest first (the move that leaves the opponent the fewest
+ *    replies first) while many tiles are empty,
+ *  - then moves into the quadrants with an odd number of empty tiles first (parity),
+ *  - and the last four empty tiles are handled by unrolled code that tries the tiles
+ *    directly, without generating move masks.
+ *
+ * The search stops as soon as the thread running it is interrupted.
+ */
+public class EndgameSolver {
+	/*
+	    Number of empty tiles at or below which TDMCAIPlayer solves positions by default.
+	 */
+	public static final int DEFAULT_EMPTIES = 16;
+	/*
+	    Below this many empty tiles, counting the opponent's replies to order moves costs more than it saves.
+	 */
+	private static final int FASTEST_FIRST_EMPTIES = 7;
+	private static final long[] QUADRANTS = {
+			0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+	};
+	private static final int NO_MOVES = -65; // Lower than any disc difference.
+	private static final int INTERRUPT_CHECK_MASK = 0xFFF; // Check for interrupts every 4096 nodes.
+
+	private long nodes;
+	private boolean aborted;
+
+	/**
+	 * The result of solving a position: the best move, and the final disc difference it
+	 * leads to for the player who makes it.
+	 */
+	public static final class Solution {
+		private final Move move;
+		private final int discDifference;
+		private final boolean exact;
+		private final long nodes;
+
+		private Solution(Move move, int discDifference, boolean exact, long nodes) {
+			this.move = move;
+			this.discDifference = discDifference;
+			this.exact = exact;
+			this.nodes = nodes;
+		}
+
+		public Move getMove() {
+			return move;
+		}
+
+		/**
+		 * Returns the final disc difference, with the empty tiles counted for the winner.
+		 * If the position was only solved for a win, loss or draw this is 1, -1 or 0.
+		 */
+		public int getDiscDifference() {
+			return discDifference;
+		}
+
+		public boolean isExact() {
+			return exact;
+		}
+
+		public long getNodes() {
+			return nodes;
+		}
+	}
+
+	/**
+	 * Solves board for the player with colour playerColor, who must have a legal move.
+	 * @param exact: find the exact disc difference, rather than only a win, loss or draw.
+	 * @return The solution, or null if the thread was interrupted first.
+	 */
+	public Solution solve(OthelloBitBoard board, TileState playerColor, boolean exact) {
+		long player = board.getBitBoardOf(playerColor);
+		long opponent = board.getBitBoardOf(playerColor.opposite());
+		long moves = OthelloBitBoard.computeLegalMoves(player, opponent);
+		if (moves == 0L) {
+			throw new IllegalArgumentException(playerColor + " has no move to solve for.");
+		}
+		nodes = 0;
+		aborted = false;
+		int empties = Long.bitCount(~(player | opponent));
+		int alpha = exact ? -64 : -1, beta = exact ? 64 : 1;
+		int bestScore = NO_MOVES;
+		long bestMove = 0L;
+		long[] orderedMoves = orderMoves(player, opponent, moves);
+		for (long move : orderedMoves) {
+			long flips = OthelloBitBoard.getFlips(move, player, opponent);
+			int score = -solve(opponent ^ flips, player | flips | move, -beta, -Math.max(alpha, bestScore), empties - 1);
+			if (aborted) {
+				return null;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = move;
+				if (bestScore >= beta) {
+					break;
+				}
+			}
+		}
+		if (!exact) {
+			bestScore = Integer.signum(bestScore);
+		}
+		return new Solution(MovePool.pool[Long.numberOfTrailingZeros(bestMove)], bestScore, exact, nodes);
+	}
+
+	/*
+	    Returns the final disc difference for the player to move, searched within alpha and beta.
+	 */
+	private int solve(long player, long opponent, int alpha, int beta, int empties) {
+		if (empties <= 4) {
+			return solveLastTiles(player, opponent, alpha, beta, empties);
+		}
+		if ((++nodes & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+			aborted = true;
+		}
+		if (aborted) {
+			return 0;
+		}
+		long moves = OthelloBitBoard.computeLegalMoves(player, opponent);
+		if (moves == 0L) {
+			if (OthelloBitBoard.computeLegalMoves(opponent, player) == 0L) {
+				return finalScore(player, opponent);
+			}
+			return -solve(opponent, player, -beta, -alpha, empties);
+		}
+		int bestScore = NO_MOVES;
+		if (empties >= FASTEST_FIRST_EMPTIES) {
+			for (long move : orderMoves(player, opponent, moves)) {
+				long flips = OthelloBitBoard.getFlips(move, player, opponent);
+				int score = -solve(opponent ^ flips, player | flips | move, -beta, -alpha, empties - 1);
+				if (score > bestScore) {
+					bestScore = score;
+					if (score > alpha) {
+						if (score >= beta) {
+							return score;
+						}
+						alpha = score;
+					}
+				}
+			}
+			return bestScore;
+		}
+		// Parity: moves into odd quadrants first, then the rest.
+		long oddRegions = oddRegions(~(player | opponent));
+		long[] movesByParity = {moves & oddRegions, moves & ~oddRegions};
+		for (long remaining : movesByParity) {
+			for (; remaining != 0L; remaining &= remaining - 1) {
+				long move = Long.lowestOneBit(remaining);
+				long flips = OthelloBitBoard.getFlips(move, player, opponent);
+				int score = -solve(opponent ^ flips, player | flips | move, -beta, -alpha, empties - 1);
+				if (score > bestScore) {
+					bestScore = score;
+					if (score > alpha) {
+						if (score >= beta) {
+							return score;
+						}
+						alpha = score;
+					}
+				}
+			}
+		}
+		return bestScore;
+	}
+
+	/*
+	    Returns moves in the order to search them: fewest opponent replies first, and
+	    moves into odd quadrants first among moves with as many replies.
+	 */
+	private long[] orderMoves(long player, long opponent, long moves) {
+		long oddRegions = oddRegions(~(player | opponent));
+		long[] ordered = new long[Long.bitCount(moves)];
+		int[] keys = new int[ordered.length];
+		int count = 0;
+		for (long remaining = moves; remaining != 0L; remaining &= remaining - 1) {
+			long move = Long.lowestOneBit(remaining);
+			long flips = OthelloBitBoard.getFlips(move, player, opponent);
+			int replies = Long.bitCount(OthelloBitBoard.computeLegalMoves(opponent ^ flips, player | flips | move));
+			int key = 2*replies + ((move & oddRegions) != 0L ? 0 : 1);
+			// Insertion sort, there are never many moves:
+			int i = count++;
+			for (; i > 0 && keys[i - 1] > key; i--) {
+				keys[i] = keys[i - 1];
+				ordered[i] = ordered[i - 1];
+			}
+			keys[i] = key;
+			ordered[i] = move;
+		}
+		return ordered;
+	}
+
+	/*
+	    Returns the union of the quadrants of the board that have an odd number of empty tiles.
+	 */
+	private static long oddRegions(long empty) {
+		long odd = 0L;
+		for (long quadrant : QUADRANTS) {
+			if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+				odd |= quadrant;
+			}
+		}
+		return odd;
+	}
+
+	/*
+	    Takes the last (at most four) empty tiles off the board, odd quadrants first, and
+	    solves them with the unrolled searches below.
+	 */
+	private int solveLastTiles(long player, long opponent, int alpha, int beta, int empties) {
+		nodes++;
+		long empty = ~(player | opponent);
+		if (empties == 0) {
+			return finalScore(player, opponent);
+		}
+		long oddRegions = oddRegions(empty);
+		int[] tiles = new int[4];
+		int count = 0;
+		for (long remaining = empty & oddRegions; remaining != 0L; remaining &= remaining - 1) {
+			tiles[count++] = Long.numberOfTrailingZeros(remaining);
+		}
+		for (long remaining = empty & ~oddRegions; remaining != 0L; remaining &= remaining - 1) {
+			tiles[count++] = Long.numberOfTrailingZeros(remaining);
+		}
+		switch (empties) {
+		case 1:
+			return solve1(player, opponent, tiles[0]);
+		case 2:
+			return solve2(player, opponent, alpha, beta, false, tiles[0], tiles[1]);
+		case 3:
+			return solve3(player, opponent, alpha, beta, false, tiles[0], tiles[1], tiles[2]);
+		default:
+			return solve4(player, opponent, alpha, beta, false, tiles[0], tiles[1], tiles[2], tiles[3]);
+		}
+	}
+
+	/*
+	    Returns the final disc difference with one empty tile left. Whoever can play on it
+	    does; if nobody can, it counts for the winner.
+	 */
+	private int solve1(long player, long opponent, int tile) {
+		long move = 1L << tile;
+		int playerTiles = Long.bitCount(player);
+		long flips = OthelloBitBoard.getFlips(move, player, opponent);
+		if (flips != 0L) {
+			return 2*(playerTiles + Long.bitCount(flips) + 1) - 64;
+		}
+		flips = OthelloBitBoard.getFlips(move, opponent, player);
+		if (flips != 0L) {
+			return 2*(playerTiles - Long.bitCount(flips)) - 64;
+		}
+		int difference = 2*playerTiles - 63;
+		return difference > 0 ? difference + 1 : difference - 1;
+	}
+
+	/*
+	    solve2, solve3 and solve4 try each of their empty tiles in turn, and let the
+	    opponent play if none of them is a legal move (or end the game if the opponent
+	    has just passed too).
+	 */
+	private int solve2(long player, long opponent, int alpha, int beta, boolean passed, int tile1, int tile2) {
+		int bestScore = NO_MOVES;
+		long move = 1L << tile1;
+		long flips = OthelloBitBoard.getFlips(move, player, opponent);
+		if (flips != 0L) {
+			bestScore = -solve1(opponent ^ flips, player | flips | move, tile2);
+		}
+		move = 1L << tile2;
+		if (bestScore < beta && (flips = OthelloBitBoard.getFlips(move, player, opponent)) != 0L) {
+			bestScore = Math.max(bestScore, -solve1(opponent ^ flips, player | flips | move, tile1));
+		}
+		if (bestScore == NO_MOVES) {
+			return passed ? finalScore(player, opponent) : -solve2(opponent, player, -beta, -alpha, true, tile1, tile2);
+		}
+		return bestScore;
+	}
+
+	private int solve3(long player, long opponent, int alpha, int beta, boolean passed, int tile1, int tile2, int tile3) {
+		int bestScore = NO_MOVES;
+		long move = 1L << tile1;
+		long flips = OthelloBitBoard.getFlips(move, player, opponent);
+		if (flips != 0L) {
+			bestScore = -solve2(opponent ^ flips, player | flips | move, -beta, -alpha, false, tile2, tile3);
+			if (bestScore >= beta) {
+				return bestScore;
+			}
+			alpha = Math.max(alpha, bestScore);
+		}
+		move = 1L << tile2;
+		if ((flips = OthelloBitBoard.getFlips(move, player, opponent)) != 0L) {
+			bestScore = Math.max(bestScore, -solve2(opponent ^ flips, player | flips | move, -beta, -alpha, false, tile1, tile3));
+			if (bestScore >= beta) {
+				return bestScore;
+			}
+			alpha = Math.max(alpha, bestScore);
+		}
+		move = 1L << tile3;
+		if ((flips = OthelloBitBoard.getFlips(move, player, opponent)) != 0L) {
+			bestScore = Math.max(bestScore, -solve2(opponent ^ flips, player | flips | move, -beta, -alpha, false, tile1, tile2));
+		}
+		if (bestScore == NO_MOVES) {
+			return passed ? finalScore(player, opponent) : -solve3(opponent, player, -beta, -alpha, true, tile1, tile2, tile3);
+		}
+		return bestScore;
+	}
+
+	private int solve4(long player, long opponent, int alpha, int beta, boolean passed,
+			int tile1, int tile2, int tile3, int tile4) {
+		int bestScore = NO_MOVES;
+		long move = 1L << tile1;
+		long flips = OthelloBitBoard.getFlips(move, player, opponent);
+		if (flips != 0L) {
+			bestScore = -solve3(opponent ^ flips, player | flips | move, -beta, -alpha, false, tile2, tile3, tile4);
+			if (bestScore >= beta) {
+				return bestScore;
+			}
+			alpha = Math.max(alpha, bestScore);
+		}
+		move = 1L << tile2;
+		if ((flips = OthelloBitBoard.getFlips(move, player, opponent)) != 0L) {
+			bestScore = Math.max(bestScore, -solve3(opponent ^ flips, player | flips | move, -beta, -alpha, false, tile1, tile3, tile4));
+			if (bestScore >= beta) {
+				return bestScore;
+			}
+			alpha = Math.max(alpha, bestScore);
+		}
+		move = 1L << tile3;
+		if ((flips = OthelloBitBoard.getFlips(move, player, opponent)) != 0L) {
+			bestScore = Math.max(bestScore, -solve3(opponent ^ flips, player | flips | move, -beta, -alpha, false, tile1, tile2, tile4));
+			if (bestScore >= beta) {
+				return bestScore;
+			}
+			alpha = Math.max(alpha, bestScore);
+		}
+		move = 1L << tile4;
+		if ((flips = OthelloBitBoard.getFlips(move, player, opponent)) != 0L) {
+			bestScore = Math.max(bestScore, -solve3(opponent ^ flips, player | flips | move, -beta, -alpha, false, tile1, tile2, tile3));
+		}
+		if (bestScore == NO_MOVES) {
+			return passed ? finalScore(player, opponent) : -solve4(opponent, player, -beta, -alpha, true, tile1, tile2, tile3, tile4);
+		}
+		return bestScore;
+	}
+
+	/*
+	    Returns the disc difference of a finished game for player, with the empty tiles counted for the winner.
+	 */
+	private static int finalScore(long player, long opponent) {
+		int playerTiles = Long.bitCount(player), opponentTiles = Long.bitCount(opponent);
+		int difference = playerTiles - opponentTiles;
+		int empty = 64 - playerTiles - opponentTiles;
+		return difference > 0 ? difference + empty : difference < 0 ? difference - empty : 0;
+	}
+}
@@ -0,0 +1,80 @@
+package player.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of static evaluations (TDMCNode.eval()), keyed by the Zobrist key of
+ * the position and the player to move. Unlike the TranspositionTable, it keeps no search
+ * results, only the value of a position, so it stays valid for as long as the evaluation
+ * doesn't change. It is shared by every search thread without locking: as in the table,
+ * each slot is the score's bits and the key xor-ed with them, and a torn slot is a miss.
+ * A new score simply replaces whatever was in its slot.
+ */
+public class EvalCache {
+	private static final int SLOT_LONGS = 2;
+
+	private final long[] slots; // For slot i: slots[2i] = key ^ score bits, slots[2i + 1] = score bits.
+	private final int slotMask;
+	private final LongAdder probes = new LongAdder(), hits = new LongAdder();
+
+	/**
+	 * Creates a cache with room for at least the given number of scores (rounded up to a power of two).
+	 */
+	public EvalCache(final int entries) {
+		int slotCount = Integer.highestOneBit(Math.max(entries, 1) * 2 - 1);
+		slots = new long[slotCount * SLOT_LONGS];
+		slotMask = slotCount - 1;
+	}
+
+	/**
+	 * Returns the score stored for the position with the given key, or NaN if it isn't in the cache.
+	 */
+	public double probe(final long key) {
+		probes.increment();
+		final int index = slotOf(key);
+		final long data = slots[index + 1];
+		if ((slots[index] ^ data) == key && key != 0L) { // An empty slot would match key 0.
+			hits.increment();
+			return Double.longBitsToDouble(data);
+		}
+		return Double.NaN;
+	}
+
+	public void store(final long key, final double score) {
+		final int index = slotOf(key);
+		final long data = Double.doubleToRawLongBits(score);
+		slots[index] = key ^ data;
+		slots[index + 1] = data;
+	}
+
+	/**
+	 * Empties the cache, for when the evaluation changes, and resets its statistics.
+	 */
+	public void clear() {
+		Arrays.fill(slots, 0L);
+		probes.reset();
+		hits.reset();
+	}
+
+	/**
+	 * Returns the fraction of probes so far that found their position, or 0 if there were none.
+	 */
+	public double getHitRate() {
+		final long probeCount = probes.sum();
+		return probeCount == 0 ? 0 : (double)hits.sum() / probeCount;
+	}
+
+	public long getProbes() {
+		return probes.sum();
+	}
+
+	private int slotOf(final long key) {
+		return ((int)(key ^ (key >>> 32)) & slotMask) * SLOT_LONGS;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d probes, %.1f%% hits", getProbes(), 100*getHitRate());
+	}
+}
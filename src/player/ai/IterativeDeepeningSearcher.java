@@ -0,0 +1,98 @@
+package player.ai;
+
+import board.TileState;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Searches the same root node to greater and greater depths until it is interrupted or
+ * cancelled, publishing the deepest result in deepestResult (see TreeSearchResult.deeper):
+ * each completed depth, and each better root move found by the depth being searched,
+ * which starts with the best move so far. The results of each depth are kept in the
+ * shared transposition table, which orders and cuts off the next one.
+ *
+ * Several of these running at once make a Lazy SMP search: the threads only cooperate
+ * through the table. To keep them from following each other through exactly the same
+ * tree, odd-numbered searchers start one depth deeper and each searcher starts on a
+ * different root move. A single searcher given a splitPool instead splits the work of
+ * each depth over the pool, and one given a rootPool searches the root moves of each depth
+ * on it in parallel (see TreeSearcher).
+ */
+class IterativeDeepeningSearcher implements Runnable {
+	private final TDMCNode root; // Shared with the other searchers, so that each node is only expanded once.
+	private final TranspositionTable table;
+	private final int id; // Number of this searcher among those searching the same root, from 0.
+	private final int startDepth;
+	private final ForkJoinPool splitPool; // Pool for splitting each search, or null to search sequentially.
+	private final SearchAlgorithm algorithm;
+	private final AtomicReference<TreeSearchResult> deepestResult;
+	private ProbCut probCut; // Parameters of selective search, or null.
+	private LateMoveReductions reductions; // Or null.
+	private ForkJoinPool rootPool; // Pool to search the root moves of each search on in parallel, or null.
+	private SearchCancellation cancellation; // Or null to search until interrupted.
+
+	public IterativeDeepeningSearcher(TDMCNode root, TranspositionTable table, int id, int startDepth,
+			ForkJoinPool splitPool, SearchAlgorithm algorithm, AtomicReference<TreeSearchResult> deepestResult) {
+		this.root = root;
+		this.table = table;
+		this.id = id;
+		this.startDepth = startDepth;
+		this.splitPool = splitPool;
+		this.algorithm = algorithm;
+		this.deepestResult = deepestResult;
+	}
+
+	/**
+	 * Makes each search selective (see TreeSearcher.setProbCut).
+	 */
+	public void setProbCut(ProbCut probCut) {
+		this.probCut = probCut;
+	}
+
+	/**
+	 * Reduces late moves in each search (see TreeSearcher.setLateMoveReductions).
+	 */
+	public void setLateMoveReductions(LateMoveReductions reductions) {
+		this.reductions = reductions;
+	}
+
+	/**
+	 * Searches the root moves of each search in parallel (see TreeSearcher.setRootPool).
+	 */
+	public void setRootPool(ForkJoinPool rootPool) {
+		this.rootPool = rootPool;
+	}
+
+	/**
+	 * Stops searching once cancellation is cancelled, as well as when interrupted.
+	 */
+	public void setCancellation(SearchCancellation cancellation) {
+		this.cancellation = cancellation;
+	}
+
+	private boolean stopped() {
+		return Thread.currentThread().isInterrupted() || (cancellation != null && cancellation.isCancelled());
+	}
+
+	@Override
+	public void run() {
+		int emptyTiles = root.getBoard().getScoreOf(TileState.EMPTY);
+		for (int depth = startDepth + (id & 1); !stopped(); depth++) {
+			TreeSearcher searcher = new TreeSearcher(root, depth, table, id, splitPool, algorithm);
+			searcher.setProbCut(probCut);
+			searcher.setLateMoveReductions(reductions);
+			searcher.setRootPool(rootPool);
+			searcher.setCancellation(cancellation);
+			searcher.setFirstRootMove(deepestResult.get().getMove());
+			searcher.setProgressListener(result -> deepestResult.accumulateAndGet(result, TreeSearchResult::deeper));
+			TreeSearchResult result = searcher.call();
+			if (searcher.wasAborted() || result.getMove() == null) {
+				return;
+			}
+			if (depth >= emptyTiles) {
+				return; // The search already reaches the end of the game.
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package player.ai;
+
+/**
+ * The parameters of late move reductions, which TreeSearcher uses to spend less time on
+ * the moves that move ordering puts last. Once the first fullDepthMoves children of a node
+ * have been searched, the others are expected to fail low, so they are first searched
+ * reduction plies shallower with a null window around alpha. Only those that turn out
+ * better than alpha are searched again to the full depth.
+ *
+ * Moves next to a corner, or in the endgame (Stage.END, or at most minEmpties empty
+ * tiles), are never reduced: a few plies decide too much there.
+ */
+public class LateMoveReductions {
+	public static final LateMoveReductions DEFAULT = new LateMoveReductions(3, 1, 3, 20);
+
+	private final int fullDepthMoves;
+	private final int reduction;
+	private final int minDepth;
+	private final int minEmpties;
+
+	/**
+	 * @param fullDepthMoves: how many children of each node are always searched to the full depth.
+	 * @param reduction: how many plies shallower the later children are searched first.
+	 * @param minDepth: the least depth left at a node for its children to be reduced.
+	 * @param minEmpties: the least empty tiles for a position not to count as the endgame.
+	 */
+	public LateMoveReductions(int fullDepthMoves, int reduction, int minDepth, int minEmpties) {
+		if (fullDepthMoves < 1 || reduction < 1 || minDepth <= reduction) {
+			throw new IllegalArgumentException("Invalid late move reductions: " + fullDepthMoves
+					+ " full depth moves, reduction " + reduction + " from depth " + minDepth);
+		}
+		this.fullDepthMoves = fullDepthMoves;
+		this.reduction = reduction;
+		this.minDepth = minDepth;
+		this.minEmpties = minEmpties;
+	}
+
+	public int getFullDepthMoves() {
+		return fullDepthMoves;
+	}
+
+	public int getReduction() {
+		return reduction;
+	}
+
+	public int getMinDepth() {
+		return minDepth;
+	}
+
+	public int getMinEmpties() {
+		return minEmpties;
+	}
+}
@@ -0,0 +1,181 @@
+package player.ai;
+
+import board.Move;
+import board.OthelloBoard;
+import board.TileState;
+import player.Player;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A player that picks moves by Monte Carlo Tree Search with UCT: it plays random games
+ * from the current position, steering more of them into the moves that have won more
+ * often so far, and plays the move that was tried the most. Unlike the alpha-beta players
+ * it needs no evaluation function, and it works the same on boards of every size.
+ */
+public class MCTSAIPlayer extends Player {
+	private static final double EXPLORATION = Math.sqrt(2); // UCB1's constant, for results between 0 and 1.
+	private static final int EXPANSION_VISITS = 4; // Leaves are only expanded once they have had this many playouts.
+	private static final long SAFETY_MILLIS = 250L; // Time left at the end of the turn, as in TDMCAIPlayer.
+
+	private Duration totalTimeRemaining = Duration.ofSeconds(119); //How much time the AI has to compute all its remaining moves during the game
+	private final MCTSMode mode;
+	private final SearchPool searchPool;
+	private long seed = System.nanoTime();
+
+	public MCTSAIPlayer(TileState color) {
+		this(color, MCTSMode.TREE_PARALLEL);
+	}
+
+	public MCTSAIPlayer(TileState color, MCTSMode mode) {
+		this(color, mode, SearchPool.shared());
+	}
+
+	public MCTSAIPlayer(TileState color, MCTSMode mode, SearchPool searchPool) {
+		super(color);
+		this.mode = mode;
+		this.searchPool = searchPool;
+	}
+
+	@Override
+	public Move nextMove(OthelloBoard board) {
+		Instant startTime = Instant.now();
+		List<Move> moves = board.getValidMoves(this.color());
+		if (moves.size() == 1) {
+			return moves.get(0);
+		}
+		Duration timeForTurn = TDMCAIPlayer.allocateTime(board, totalTimeRemaining);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeForTurn.toMillis() - SAFETY_MILLIS, 0L));
+
+		int threads = searchPool.getWorkerThreads();
+		MCTSNode sharedRoot = mode == MCTSMode.TREE_PARALLEL ? new MCTSNode(MCTSNode.PASS, this.color().opposite()) : null;
+		List<Callable<MCTSNode>> searches = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++) {
+			MCTSNode root = sharedRoot != null ? sharedRoot : new MCTSNode(MCTSNode.PASS, this.color().opposite());
+			PlayoutBoard playoutBoard = PlayoutBoard.of(board, this.color());
+			XorShiftRandom random = new XorShiftRandom(seed += 0x9E3779B97F4A7C15L);
+			searches.add(() -> search(root, playoutBoard, random, deadline));
+		}
+		List<MCTSNode> roots = new ArrayList<>(threads);
+		try {
+			for (Future<MCTSNode> search : searchPool.workers().invokeAll(searches)) {
+				if (sharedRoot == null || roots.isEmpty()) {
+					roots.add(search.get());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Playouts failed", e.getCause());
+		}
+
+		Move bestMove = mostVisitedMove(roots, board.getBoardSize());
+		if (bestMove == null) {
+			bestMove = moves.get(0); // Interrupted before a single playout finished.
+		}
+		int playouts = roots.stream().mapToInt(MCTSNode::getVisits).sum();
+		Duration turnRuntime = Duration.between(startTime, Instant.now());
+		totalTimeRemaining = totalTimeRemaining.minus(turnRuntime);
+		Logger.getLogger(MCTSAIPlayer.class.getName()).log(Level.INFO,
+				"Playouts: {0}, Threads: {1}, Time elapsed: {2}ms, Time left for future AI moves: {3}s",
+				new Object[]{playouts, threads, turnRuntime.toMillis(), totalTimeRemaining.getSeconds()});
+		return bestMove;
+	}
+
+	/*
+	    Runs playouts from root until the deadline, and returns root.
+	 */
+	private MCTSNode search(MCTSNode root, PlayoutBoard board, XorShiftRandom random, long deadline) {
+		Path path = new Path(root);
+		while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+			board.reset();
+			path.clear();
+			MCTSNode node = root;
+			node.visit();
+			while (true) {
+				MCTSNode[] children = node.getChildren();
+				if (children == null) {
+					if (node != root && node.getVisits() < EXPANSION_VISITS) {
+						break;
+					}
+					children = node.expand(board);
+				}
+				if (children.length == 0) {
+					break; // The game is over.
+				}
+				node = node.selectChild(EXPLORATION);
+				node.visit();
+				if (node.getTile() == MCTSNode.PASS) {
+					board.pass();
+				} else {
+					board.play(node.getTile());
+				}
+				path.add(node);
+			}
+			TileState winner = board.playOut(random);
+			path.addResult(winner);
+		}
+		return root;
+	}
+
+	/*
+	    Returns the root move with the most playouts over all the roots, or null if there were none.
+	 */
+	private Move mostVisitedMove(List<MCTSNode> roots, int boardSize) {
+		int[] visitsByTile = new int[boardSize*boardSize];
+		for (MCTSNode root : roots) {
+			MCTSNode[] children = root.getChildren();
+			if (children != null) {
+				for (MCTSNode child : children) {
+					visitsByTile[child.getTile()] += child.getVisits();
+				}
+			}
+		}
+		int bestTile = -1;
+		for (int tile = 0; tile < visitsByTile.length; tile++) {
+			if (visitsByTile[tile] > 0 && (bestTile < 0 || visitsByTile[tile] > visitsByTile[bestTile])) {
+				bestTile = tile;
+			}
+		}
+		return bestTile < 0 ? null : PlayoutBoard.moveOf(bestTile);
+	}
+
+	/*
+	    The nodes a playout went through, kept in an array that is reused for every playout.
+	 */
+	private static final class Path {
+		private MCTSNode[] nodes = new MCTSNode[64];
+		private int size;
+
+		private Path(MCTSNode root) {
+			nodes[0] = root;
+		}
+
+		private void clear() {
+			size = 1; // Keep the root.
+		}
+
+		private void add(MCTSNode node) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2*size);
+			}
+			nodes[size++] = node;
+		}
+
+		private void addResult(TileState winner) {
+			for (int i = 0; i < size; i++) {
+				nodes[i].addResult(winner);
+			}
+		}
+	}
+}
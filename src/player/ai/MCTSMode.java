@@ -0,0 +1,9 @@
+package player.ai;
+
+/**
+ * How MCTSAIPlayer spreads its playouts over the search workers.
+ */
+public enum MCTSMode {
+	ROOT_PARALLEL, // Every worker grows its own tree, and the root visit counts are added up at the end.
+	TREE_PARALLEL // Every worker grows the same tree, steered apart by virtual losses.
+}
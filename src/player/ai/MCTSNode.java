@@ -0,0 +1,107 @@
+package player.ai;
+
+import board.TileState;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A node of the tree searched by MCTSAIPlayer. Nodes don't hold a board: the position is
+ * rebuilt by playing the moves from the root down on a PlayoutBoard. The counts can be
+ * updated by several threads at once (see MCTSMode.TREE_PARALLEL).
+ */
+final class MCTSNode {
+	static final int PASS = -1;
+
+	private final int tile; // The move that leads to this node, or PASS.
+	private final TileState mover; // The player who made that move; results are counted for them.
+	/*
+	    A visit is counted when a playout goes through the node, before its result is known,
+	    so that other threads see an unfinished playout as a loss (a "virtual loss") and tend
+	    to explore elsewhere. halfPoints is 2 for every win and 1 for every draw.
+	 */
+	private final AtomicInteger visits = new AtomicInteger();
+	private final AtomicInteger halfPoints = new AtomicInteger();
+	private volatile MCTSNode[] children; // Null until the node is expanded.
+
+	MCTSNode(int tile, TileState mover) {
+		this.tile = tile;
+		this.mover = mover;
+	}
+
+	int getTile() {
+		return tile;
+	}
+
+	int getVisits() {
+		return visits.get();
+	}
+
+	MCTSNode[] getChildren() {
+		return children;
+	}
+
+	void visit() {
+		visits.incrementAndGet();
+	}
+
+	/**
+	 * Records the result of a playout through this node.
+	 */
+	void addResult(TileState winner) {
+		if (winner == mover) {
+			halfPoints.addAndGet(2);
+		} else if (winner == TileState.EMPTY) {
+			halfPoints.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Creates the children of this node, for the position board is in. A player with no
+	 * moves gets a single PASS child, and a finished game gets no children.
+	 */
+	MCTSNode[] expand(PlayoutBoard board) {
+		synchronized (this) {
+			if (children == null) {
+				TileState player = board.toMove();
+				int moves = board.countMoves();
+				MCTSNode[] newChildren;
+				if (moves > 0) {
+					newChildren = new MCTSNode[moves];
+					for (int i = 0; i < moves; i++) {
+						newChildren[i] = new MCTSNode(board.moveAt(i), player);
+					}
+				} else if (board.mustPass()) {
+					newChildren = new MCTSNode[] {new MCTSNode(PASS, player)};
+				} else {
+					newChildren = new MCTSNode[0];
+				}
+				children = newChildren;
+			}
+			return children;
+		}
+	}
+
+	/**
+	 * Returns the child with the highest upper confidence bound (UCB1): its win rate, plus
+	 * a bonus for having been tried less than its siblings. Children never tried come first.
+	 */
+	MCTSNode selectChild(double exploration) {
+		MCTSNode[] candidates = children;
+		double logVisits = Math.log(Math.max(visits.get(), 1));
+		MCTSNode best = null;
+		double bestBound = Double.NEGATIVE_INFINITY;
+		for (MCTSNode child : candidates) {
+			int childVisits = child.visits.get();
+			if (childVisits == 0) {
+				return child;
+			}
+			double bound = child.halfPoints.get() / (2.0*childVisits)
+					+ exploration*Math.sqrt(logVisits / childVisits);
+			if (bound > bestBound) {
+				bestBound = bound;
+				best = child;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,240 @@
+package player.ai;
+
+import board.OthelloBitBoard;
+import board.TileState;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An evaluation of 8x8 positions by n-tuple patterns, an alternative to the weighted
+ * squares of TDMCNode.eval() (see TDMCAIPlayer.setPatternEvaluator). A pattern is a list
+ * of squares; each way of filling them (empty, the player to move's or the opponent's,
+ * read as a number in base 3) has a weight for each game Stage, and the value of a
+ * position is the sum of the weights of every pattern on it. Each pattern is applied in
+ * all the places the rotations and reflections of the board put it, sharing its weights.
+ *
+ * The weights are read from a file mapped into memory, which is only paged in as it is
+ * used and is shared by every process reading the same file. The file is big-endian:
+ *     int MAGIC, int VERSION, int stages, int patterns,
+ *     for each pattern: int size, then size ints, its squares (row*8 + col),
+ *     then for each stage and each pattern: 3^size floats, its weights.
+ * PatternWeightsWriter writes such a file for DEFAULT_PATTERNS.
+ */
+public class PatternEvaluator {
+	public static final int MAGIC = 0x4F545057; // "OTPW"
+	public static final int VERSION = 1;
+	/*
+	    The patterns the writer uses, given once each in one corner of the board: an edge with
+	    its two X squares, the 2x5 block at a corner, the diagonals of four squares or more,
+	    and the second, third and fourth rows.
+	 */
+	public static final int[][] DEFAULT_PATTERNS = {
+			{0, 1, 2, 3, 4, 5, 6, 7, 9, 14},
+			{0, 1, 2, 3, 4, 8, 9, 10, 11, 12},
+			{0, 9, 18, 27, 36, 45, 54, 63},
+			{1, 10, 19, 28, 37, 46, 55},
+			{2, 11, 20, 29, 38, 47},
+			{3, 12, 21, 30, 39},
+			{4, 13, 22, 31},
+			{8, 9, 10, 11, 12, 13, 14, 15},
+			{16, 17, 18, 19, 20, 21, 22, 23},
+			{24, 25, 26, 27, 28, 29, 30, 31}
+	};
+
+	private final FloatBuffer weights; // A view of the mapped file, read with absolute gets only, so shared by every thread.
+	private final int[][] instances; // The squares of each place a pattern is applied, in the order of its pattern.
+	private final int[][] offsets; // Where the weights of each instance start, by stage and instance.
+
+	private PatternEvaluator(FloatBuffer weights, int[][] instances, int[][] offsets) {
+		this.weights = weights;
+		this.instances = instances;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Maps the weights file and checks it is complete.
+	 */
+	public static PatternEvaluator load(Path file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays mapped once closed.
+		}
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException("Not a version " + VERSION + " pattern weights file: " + file);
+			}
+			final int stages = buffer.getInt();
+			final int patternCount = buffer.getInt();
+			if (stages != Stage.values().length || patternCount <= 0) {
+				throw new IOException("Invalid pattern weights header in " + file);
+			}
+			int[][] patterns = new int[patternCount][];
+			long weightsPerStage = 0;
+			for (int p = 0; p < patternCount; p++) {
+				patterns[p] = new int[buffer.getInt()];
+				for (int i = 0; i < patterns[p].length; i++) {
+					patterns[p][i] = buffer.getInt();
+				}
+				checkPattern(patterns[p], file);
+				weightsPerStage += configurations(patterns[p].length);
+			}
+			if (buffer.remaining() != weightsPerStage*stages*Float.BYTES) {
+				throw new IOException("Expected " + weightsPerStage*stages + " weights in " + file);
+			}
+			return create(patterns, buffer.slice().asFloatBuffer());
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated pattern weights file: " + file, e);
+		}
+	}
+
+	/**
+	 * Creates an evaluator of patterns whose weights are laid out in weights as in the file.
+	 */
+	static PatternEvaluator create(int[][] patterns, FloatBuffer weights) {
+		List<int[]> instances = new ArrayList<>();
+		List<Integer> patternOfInstance = new ArrayList<>();
+		int[] patternOffsets = new int[patterns.length];
+		int weightsPerStage = 0;
+		for (int p = 0; p < patterns.length; p++) {
+			patternOffsets[p] = weightsPerStage;
+			weightsPerStage += configurations(patterns[p].length);
+			for (int[] instance : symmetricInstances(patterns[p])) {
+				instances.add(instance);
+				patternOfInstance.add(p);
+			}
+		}
+		int[][] offsets = new int[Stage.values().length][instances.size()];
+		for (int stage = 0; stage < offsets.length; stage++) {
+			for (int i = 0; i < instances.size(); i++) {
+				offsets[stage][i] = stage*weightsPerStage + patternOffsets[patternOfInstance.get(i)];
+			}
+		}
+		return new PatternEvaluator(weights, instances.toArray(new int[0][]), offsets);
+	}
+
+	/**
+	 * Returns the value of board for playerColor, in stage.
+	 */
+	public double eval(OthelloBitBoard board, TileState playerColor, Stage stage) {
+		final long playerTiles = board.getBitBoardOf(playerColor);
+		final long opponentTiles = board.getBitBoardOf(playerColor.opposite());
+		final int[] stageOffsets = offsets[stage.ordinal()];
+		double value = 0;
+		for (int i = 0; i < instances.length; i++) {
+			value += weights.get(stageOffsets[i] + index(instances[i], playerTiles, opponentTiles));
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the number of the configuration of squares: the base 3 number whose digit k is 0
+	 * if squares[k] is empty, 1 if it is the player's and 2 if it is the opponent's.
+	 */
+	static int index(int[] squares, long playerTiles, long opponentTiles) {
+		int index = 0;
+		for (int k = squares.length - 1; k >= 0; k--) {
+			final int square = squares[k];
+			index = index*3 + (int)((playerTiles >>> square) & 1L) + 2*(int)((opponentTiles >>> square) & 1L);
+		}
+		return index;
+	}
+
+	static int configurations(int squares) {
+		int configurations = 1;
+		for (int i = 0; i < squares; i++) {
+			configurations *= 3;
+		}
+		return configurations;
+	}
+
+	/**
+	 * Returns the places pattern is applied: its images under the eight rotations and
+	 * reflections of the board, keeping one of those covering the same squares.
+	 */
+	static List<int[]> symmetricInstances(int[] pattern) {
+		List<int[]> instances = new ArrayList<>(8);
+		Set<String> squareSets = new TreeSet<>();
+		for (int symmetry = 0; symmetry < 8; symmetry++) {
+			int[] instance = new int[pattern.length];
+			for (int i = 0; i < pattern.length; i++) {
+				instance[i] = transform(pattern[i], symmetry);
+			}
+			int[] squareSet = instance.clone();
+			Arrays.sort(squareSet);
+			if (squareSets.add(Arrays.toString(squareSet))) {
+				instances.add(instance);
+			}
+		}
+		return instances;
+	}
+
+	/*
+	    Returns the square square is moved to by symmetry: bit 0 reflects the columns, bit 1
+	    the rows, and bit 2 swaps rows and columns.
+	 */
+	private static int transform(int square, int symmetry) {
+		int row = square / 8, col = square % 8;
+		if ((symmetry & 1) != 0) {
+			col = 7 - col;
+		}
+		if ((symmetry & 2) != 0) {
+			row = 7 - row;
+		}
+		if ((symmetry & 4) != 0) {
+			int swapped = row;
+			row = col;
+			col = swapped;
+		}
+		return row*8 + col;
+	}
+
+	private static void checkPattern(int[] pattern, Path file) throws IOException {
+		if (pattern.length == 0 || pattern.length > 12) { // 3^12 weights per stage is as large as a pattern gets.
+			throw new IOException("Invalid pattern size " + pattern.length + " in " + file);
+		}
+		for (int square : pattern) {
+			if (square < 0 || square >= 64) {
+				throw new IOException("Invalid pattern square " + square + " in " + file);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of patterns applied to each position.
+	 */
+	public int getInstanceCount() {
+		return instances.length;
+	}
+
+	/**
+	 * Returns the start of a weights file for patterns, up to the weights.
+	 */
+	static ByteBuffer header(int[][] patterns) {
+		int size = 4*Integer.BYTES;
+		for (int[] pattern : patterns) {
+			size += (pattern.length + 1)*Integer.BYTES;
+		}
+		ByteBuffer header = ByteBuffer.allocate(size);
+		header.putInt(MAGIC).putInt(VERSION).putInt(Stage.values().length).putInt(patterns.length);
+		for (int[] pattern : patterns) {
+			header.putInt(pattern.length);
+			for (int square : pattern) {
+				header.putInt(square);
+			}
+		}
+		header.flip();
+		return header;
+	}
+}
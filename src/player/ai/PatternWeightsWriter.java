@@ -0,0 +1,87 @@
+package player.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a PatternEvaluator weights file for PatternEvaluator.DEFAULT_PATTERNS, seeded from
+ * the position weights of TDMCNode: each configuration of a pattern is worth the weights of
+ * the player's squares in it minus those of the opponent's, each divided by the number of
+ * patterns covering the square. The patterns cover every square, so the file scores a
+ * position as the position weights alone do. It is a starting point for trained weights,
+ * and a reference for the file format.
+ *
+ * Usage: PatternWeightsWriter outputFile
+ */
+public class PatternWeightsWriter {
+	private static final Logger LOGGER = Logger.getLogger(PatternWeightsWriter.class.getName());
+
+	public static void write(int[][] patterns, Path file) throws IOException {
+		int[] coverage = new int[64]; // How many pattern instances cover each square.
+		for (int[] pattern : patterns) {
+			for (int[] instance : PatternEvaluator.symmetricInstances(pattern)) {
+				for (int square : instance) {
+					coverage[square]++;
+				}
+			}
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer header = PatternEvaluator.header(patterns);
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			for (Stage stage : Stage.values()) {
+				final double[] positionWeights = TDMCNode.getPositionWeights(stage);
+				for (int[] pattern : patterns) {
+					ByteBuffer weights = ByteBuffer.allocate(PatternEvaluator.configurations(pattern.length)*Float.BYTES);
+					for (int configuration = 0; weights.hasRemaining(); configuration++) {
+						weights.putFloat(seedWeight(pattern, configuration, positionWeights, coverage));
+					}
+					weights.flip();
+					while (weights.hasRemaining()) {
+						channel.write(weights);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	    Returns the weight of configuration of pattern (see PatternEvaluator.index) made from positionWeights.
+	 */
+	private static float seedWeight(int[] pattern, int configuration, double[] positionWeights, int[] coverage) {
+		double weight = 0;
+		for (int k = 0; k < pattern.length; k++, configuration /= 3) {
+			final int square = pattern[k];
+			if (coverage[square] == 0) {
+				continue;
+			}
+			switch (configuration % 3) {
+			case 1:
+				weight += positionWeights[square] / coverage[square];
+				break;
+			case 2:
+				weight -= positionWeights[square] / coverage[square];
+				break;
+			}
+		}
+		return (float)weight;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: PatternWeightsWriter outputFile");
+			System.exit(1);
+		}
+		Path output = Paths.get(args[0]);
+		write(PatternEvaluator.DEFAULT_PATTERNS, output);
+		LOGGER.log(Level.INFO, "Wrote pattern weights to {0}", output);
+	}
+}
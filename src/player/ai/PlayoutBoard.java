@@ -0,0 +1,209 @@
+package player.ai;
+
+import board.Move;
+import board.MovePool;
+import board.OthelloBitBoard;
+import board.OthelloBoard;
+import board.OthelloLargeBitBoard;
+import board.TileState;
+
+/**
+ * A scratch position that MCTSAIPlayer plays moves on over and over: down the tree from
+ * the root, and then randomly to the end of the game. Nothing is allocated once the
+ * board is created, so playouts don't produce garbage. Moves are tile numbers
+ * (row*size + col), and the board keeps track of whose turn it is.
+ */
+abstract class PlayoutBoard {
+	protected final TileState rootPlayer; // The player to move at the root.
+	protected TileState toMove;
+
+	protected PlayoutBoard(TileState rootPlayer) {
+		this.rootPlayer = rootPlayer;
+		this.toMove = rootPlayer;
+	}
+
+	/**
+	 * Returns a playout board for the position on board, with playerColor to move.
+	 */
+	static PlayoutBoard of(OthelloBoard board, TileState playerColor) {
+		if (board instanceof OthelloBitBoard) {
+			return new Bits((OthelloBitBoard)board, playerColor);
+		} else if (board instanceof OthelloLargeBitBoard) {
+			return new Large((OthelloLargeBitBoard)board, playerColor);
+		}
+		throw new IllegalArgumentException("No playouts for " + board.getClass().getSimpleName());
+	}
+
+	TileState toMove() {
+		return toMove;
+	}
+
+	/**
+	 * Goes back to the root position.
+	 */
+	abstract void reset();
+
+	/**
+	 * Returns the number of moves the player to move can make.
+	 */
+	abstract int countMoves();
+
+	/**
+	 * Returns the tile of the move at position index among the moves of the player to move.
+	 * Only valid straight after countMoves().
+	 */
+	abstract int moveAt(int index);
+
+	/**
+	 * Plays the move on tile for the player to move, and passes the turn.
+	 */
+	abstract void play(int tile);
+
+	void pass() {
+		toMove = toMove.opposite();
+	}
+
+	/**
+	 * Has the player to move no moves, but the opponent does?
+	 */
+	boolean mustPass() {
+		if (countMoves() != 0) {
+			return false;
+		}
+		pass();
+		boolean opponentCanMove = countMoves() != 0;
+		pass();
+		return opponentCanMove;
+	}
+
+	/**
+	 * Returns the winner of the current position if nobody plays again, or EMPTY for a draw.
+	 */
+	abstract TileState leader();
+
+	/**
+	 * Plays random moves until neither player can move, and returns the winner (EMPTY for a draw).
+	 */
+	TileState playOut(XorShiftRandom random) {
+		int passes = 0;
+		while (passes < 2) {
+			int moves = countMoves();
+			if (moves == 0) {
+				pass();
+				passes++;
+			} else {
+				play(moveAt(random.nextInt(moves)));
+				passes = 0;
+			}
+		}
+		return leader();
+	}
+
+	static Move moveOf(int tile) {
+		return MovePool.pool[tile];
+	}
+
+	/*
+	    8x8 boards, kept as two longs and played with the shifts of OthelloBitBoard.
+	 */
+	private static final class Bits extends PlayoutBoard {
+		private final long rootDark, rootLight;
+		private long dark, light;
+		private long legal; // The moves found by the last countMoves().
+
+		private Bits(OthelloBitBoard board, TileState playerColor) {
+			super(playerColor);
+			rootDark = board.getBitBoardOf(TileState.DARK);
+			rootLight = board.getBitBoardOf(TileState.LIGHT);
+			reset();
+		}
+
+		@Override
+		void reset() {
+			dark = rootDark;
+			light = rootLight;
+			toMove = rootPlayer;
+		}
+
+		@Override
+		int countMoves() {
+			legal = toMove == TileState.DARK ? OthelloBitBoard.computeLegalMoves(dark, light)
+					: OthelloBitBoard.computeLegalMoves(light, dark);
+			return Long.bitCount(legal);
+		}
+
+		@Override
+		int moveAt(int index) {
+			long moves = legal;
+			for (; index > 0; index--) {
+				moves &= moves - 1;
+			}
+			return Long.numberOfTrailingZeros(moves);
+		}
+
+		@Override
+		void play(int tile) {
+			long move = 1L << tile;
+			if (toMove == TileState.DARK) {
+				long flips = OthelloBitBoard.getFlips(move, dark, light);
+				dark |= move | flips;
+				light &= ~flips;
+			} else {
+				long flips = OthelloBitBoard.getFlips(move, light, dark);
+				light |= move | flips;
+				dark &= ~flips;
+			}
+			toMove = toMove.opposite();
+		}
+
+		@Override
+		TileState leader() {
+			int difference = Long.bitCount(dark) - Long.bitCount(light);
+			return difference > 0 ? TileState.DARK : difference < 0 ? TileState.LIGHT : TileState.EMPTY;
+		}
+	}
+
+	/*
+	    Larger boards, played on a scratch OthelloLargeBitBoard that is reset by copying the root into it.
+	 */
+	private static final class Large extends PlayoutBoard {
+		private final OthelloLargeBitBoard root, board;
+		private final int size;
+
+		private Large(OthelloLargeBitBoard root, TileState playerColor) {
+			super(playerColor);
+			this.root = new OthelloLargeBitBoard(root);
+			this.board = new OthelloLargeBitBoard(root);
+			this.size = root.getBoardSize();
+		}
+
+		@Override
+		void reset() {
+			board.copyFrom(root);
+			toMove = rootPlayer;
+		}
+
+		@Override
+		int countMoves() {
+			return board.countValidMoves(toMove);
+		}
+
+		@Override
+		int moveAt(int index) {
+			Move move = board.getValidMove(toMove, index);
+			return move.row()*size + move.col();
+		}
+
+		@Override
+		void play(int tile) {
+			board.makeMove(moveOf(tile), toMove);
+			toMove = toMove.opposite();
+		}
+
+		@Override
+		TileState leader() {
+			int difference = board.getScoreOf(TileState.DARK) - board.getScoreOf(TileState.LIGHT);
+			return difference > 0 ? TileState.DARK : difference < 0 ? TileState.LIGHT : TileState.EMPTY;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package player.ai;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * The parameters of Multi-ProbCut (Buro, 1997), a selective search that TreeSearcher uses
+ * to skip subtrees that are very likely to be cut off. Before searching a node to depth d,
+ * it is searched to a shallow depth d' first. The deep value is close to a linear function
+ * of the shallow one, v_d = slope*v_d' + intercept, plus an error with standard deviation
+ * sigma. If the shallow value predicts v_d to be above beta (or below alpha) by more than
+ * threshold standard deviations, the node is cut without the deep search.
+ *
+ * The regression is fitted separately for each game Stage and each depth, by running both
+ * depths over a corpus of positions (see ProbCutCalibrator), and kept in a properties file:
+ *     threshold=1.5
+ *     MIDDLE.6=2 1.02 -0.13 1.87    (stage.depth=shallowDepth slope intercept sigma)
+ */
+public class ProbCut {
+	public static final double DEFAULT_THRESHOLD = 1.5;
+	public static final int MIN_DEPTH = 3; // Shallower searches are cheap enough as they are.
+	public static final int MAX_DEPTH = 32;
+
+	private double threshold = DEFAULT_THRESHOLD;
+	private final Cut[][] cuts = new Cut[Stage.values().length][MAX_DEPTH + 1]; // Null where there's no cut.
+
+	/**
+	 * Creates parameters with no cuts; they are added with setCut.
+	 */
+	public ProbCut() {
+	}
+
+	/**
+	 * Returns the shallow depth used to predict a search to depth: about half of it, with
+	 * the same parity, since the evaluation of positions an odd and an even number of moves
+	 * ahead differ systematically.
+	 */
+	public static int shallowDepth(int depth) {
+		int shallow = depth / 2;
+		if ((depth - shallow) % 2 != 0) {
+			shallow--;
+		}
+		return Math.max(shallow, 2 - depth % 2);
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Sets how many standard deviations a prediction must lie outside the window to cut: the
+	 * lower, the more is pruned, and the more often the search goes wrong.
+	 */
+	public void setThreshold(double threshold) {
+		this.threshold = threshold;
+	}
+
+	public void setCut(Stage stage, int depth, int shallowDepth, double slope, double intercept, double sigma) {
+		if (depth < MIN_DEPTH || depth > MAX_DEPTH || shallowDepth <= 0 || shallowDepth >= depth) {
+			throw new IllegalArgumentException("No cut from depth " + shallowDepth + " to depth " + depth);
+		}
+		if (slope <= 0 || sigma < 0) {
+			throw new IllegalArgumentException("Invalid cut: slope " + slope + ", sigma " + sigma);
+		}
+		cuts[stage.ordinal()][depth] = new Cut(shallowDepth, slope, intercept, sigma);
+	}
+
+	/**
+	 * Returns the cut for searches of positions of stage to depth, or null if there is none.
+	 */
+	Cut getCut(Stage stage, int depth) {
+		return depth <= MAX_DEPTH ? cuts[stage.ordinal()][depth] : null;
+	}
+
+	/**
+	 * Reads the parameters written by save.
+	 */
+	public static ProbCut load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		ProbCut probCut = new ProbCut();
+		for (String name : properties.stringPropertyNames()) {
+			String value = properties.getProperty(name).trim();
+			try {
+				if (name.equals("threshold")) {
+					probCut.setThreshold(Double.parseDouble(value));
+					continue;
+				}
+				int dot = name.indexOf('.');
+				String[] fields = value.split("\\s+");
+				if (dot < 0 || fields.length != 4) {
+					throw new IOException("Invalid ProbCut parameter " + name + "=" + value + " in " + file);
+				}
+				probCut.setCut(Stage.valueOf(name.substring(0, dot)), Integer.parseInt(name.substring(dot + 1)),
+						Integer.parseInt(fields[0]), Double.parseDouble(fields[1]),
+						Double.parseDouble(fields[2]), Double.parseDouble(fields[3]));
+			} catch (IllegalArgumentException e) { // Includes NumberFormatException.
+				throw new IOException("Invalid ProbCut parameter " + name + "=" + value + " in " + file, e);
+			}
+		}
+		return probCut;
+	}
+
+	public void save(Path file) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("# stage.depth=shallowDepth slope intercept sigma\n");
+			writer.write("threshold=" + threshold + "\n");
+			for (Stage stage : Stage.values()) {
+				for (int depth = MIN_DEPTH; depth <= MAX_DEPTH; depth++) {
+					Cut cut = getCut(stage, depth);
+					if (cut != null) {
+						writer.write(stage + "." + depth + "=" + cut.shallowDepth + " " + cut.slope
+								+ " " + cut.intercept + " " + cut.sigma + "\n");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The regression between the shallow and the deep search of one stage and depth.
+	 */
+	static final class Cut {
+		final int shallowDepth;
+		final double slope, intercept, sigma;
+
+		private Cut(int shallowDepth, double slope, double intercept, double sigma) {
+			this.shallowDepth = shallowDepth;
+			this.slope = slope;
+			this.intercept = intercept;
+			this.sigma = sigma;
+		}
+
+		/**
+		 * Returns the shallow value at or above which the deep value is predicted to be at least beta.
+		 */
+		double highBound(double beta, double threshold) {
+			return (beta + threshold*sigma - intercept) / slope;
+		}
+
+		/**
+		 * Returns the shallow value at or below which the deep value is predicted to be at most alpha.
+		 */
+		double lowBound(double alpha, double threshold) {
+			return (alpha - threshold*sigma - intercept) / slope;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package player.ai;
+
+import board.Move;
+import board.MovePool;
+import board.OthelloBitBoard;
+import board.TileState;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fits the ProbCut parameters of each game Stage and depth. Every position of a corpus is
+ * searched to each depth from 1 to maxDepth with a full window, and for each depth d, the
+ * values at d are regressed on the values at ProbCut.shallowDepth(d) of the positions in
+ * the same stage. Won and lost positions, whose values are infinite, are left out.
+ *
+ * The corpus is made of one position from each of a number of games played at random,
+ * taken at a random point between the opening and the endgame (which is solved exactly
+ * instead, see EndgameSolver).
+ *
+ * Usage: ProbCutCalibrator outputFile [positions [maxDepth [seed]]]
+ */
+public class ProbCutCalibrator {
+	private static final Logger LOGGER = Logger.getLogger(ProbCutCalibrator.class.getName());
+	private static final int MIN_SAMPLES = 30; // Fewer positions of a stage give no cut for it.
+	private static final int TABLE_ENTRIES = 1 << 18;
+
+	private final int maxDepth;
+	private final Regression[][] regressions; // By stage and depth.
+
+	public ProbCutCalibrator(int maxDepth) {
+		if (maxDepth < ProbCut.MIN_DEPTH || maxDepth > ProbCut.MAX_DEPTH) {
+			throw new IllegalArgumentException("Depth must be between " + ProbCut.MIN_DEPTH + " and " + ProbCut.MAX_DEPTH);
+		}
+		this.maxDepth = maxDepth;
+		regressions = new Regression[Stage.values().length][maxDepth + 1];
+		for (Regression[] regressionsOfStage : regressions) {
+			for (int depth = 0; depth <= maxDepth; depth++) {
+				regressionsOfStage[depth] = new Regression();
+			}
+		}
+	}
+
+	/**
+	 * Searches positions, on the workers of searchPool, and adds their values to the regressions.
+	 */
+	public void addPositions(List<OthelloBitBoard> positions, List<TileState> playersToMove, SearchPool searchPool)
+			throws InterruptedException {
+		List<Callable<double[]>> searches = new ArrayList<>(positions.size());
+		for (int i = 0; i < positions.size(); i++) {
+			OthelloBitBoard position = positions.get(i);
+			TileState playerToMove = playersToMove.get(i);
+			// Each position gets a tree of its own, only while it's searched, so that the nodes kept don't fill the memory:
+			searches.add(() -> valuesByDepth(new SearchTree().rootFor(position, playerToMove)));
+		}
+		List<Future<double[]>> results = searchPool.workers().invokeAll(searches);
+		for (int i = 0; i < positions.size(); i++) {
+			double[] values;
+			try {
+				values = results.get(i).get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Calibration search failed", e.getCause());
+			}
+			Stage stage = new TDMCNode(positions.get(i), playersToMove.get(i)).getStage();
+			for (int depth = ProbCut.MIN_DEPTH; depth <= maxDepth; depth++) {
+				double shallowValue = values[ProbCut.shallowDepth(depth)];
+				double deepValue = values[depth];
+				if (!Double.isInfinite(shallowValue) && !Double.isInfinite(deepValue)) {
+					regressions[stage.ordinal()][depth].add(shallowValue, deepValue);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of node searched to each depth up to maxDepth (index 0 is unused).
+	 */
+	private double[] valuesByDepth(TDMCNode node) {
+		TranspositionTable table = new TranspositionTable(TABLE_ENTRIES);
+		double[] values = new double[maxDepth + 1];
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			table.newSearch();
+			values[depth] = new TreeSearcher(node, depth, table, 0, null, SearchAlgorithm.PVS).score();
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the parameters fitted to the positions added so far.
+	 */
+	public ProbCut fit() {
+		ProbCut probCut = new ProbCut();
+		for (Stage stage : Stage.values()) {
+			for (int depth = ProbCut.MIN_DEPTH; depth <= maxDepth; depth++) {
+				Regression regression = regressions[stage.ordinal()][depth];
+				if (regression.samples < MIN_SAMPLES || regression.slope() <= 0) {
+					continue;
+				}
+				probCut.setCut(stage, depth, ProbCut.shallowDepth(depth),
+						regression.slope(), regression.intercept(), regression.sigma());
+				LOGGER.log(Level.INFO, "{0} depth {1} from {2}: slope {3}, intercept {4}, sigma {5}, samples {6}",
+						new Object[]{stage, depth, ProbCut.shallowDepth(depth), regression.slope(),
+								regression.intercept(), regression.sigma(), regression.samples});
+			}
+		}
+		return probCut;
+	}
+
+	/**
+	 * Plays a game at random from the start and returns it at a random turn with at least
+	 * minEmpties empty tiles left, with the player to move added to playersToMove, or null
+	 * if the game ended before then.
+	 */
+	private static OthelloBitBoard randomPosition(Random random, int minEmpties, List<TileState> playersToMove) {
+		OthelloBitBoard board = new OthelloBitBoard();
+		TileState player = TileState.DARK;
+		int turns = 6 + random.nextInt(board.getScoreOf(TileState.EMPTY) - minEmpties - 6 + 1);
+		for (int turn = 0; turn < turns; turn++) {
+			List<Move> moves = board.getValidMoves(player);
+			if (moves.isEmpty()) {
+				player = player.opposite();
+				moves = board.getValidMoves(player);
+				if (moves.isEmpty()) {
+					return null;
+				}
+			}
+			board.makeMove(moves.get(random.nextInt(moves.size())), player);
+			player = player.opposite();
+		}
+		if (board.getValidMovesAsBits(player) == 0L && board.getValidMovesAsBits(player.opposite()) == 0L) {
+			return null;
+		}
+		playersToMove.add(player);
+		return board;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.out.println("Usage: ProbCutCalibrator outputFile [positions [maxDepth [seed]]]");
+			System.exit(1);
+		}
+		Path output = Paths.get(args[0]);
+		int positionCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int maxDepth = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+		Random random = new Random(args.length > 3 ? Long.parseLong(args[3]) : 0L);
+		Move.setBoardSize(8);
+		MovePool.initialize(8);
+
+		List<OthelloBitBoard> positions = new ArrayList<>(positionCount);
+		List<TileState> playersToMove = new ArrayList<>(positionCount);
+		while (positions.size() < positionCount) {
+			OthelloBitBoard position = randomPosition(random, EndgameSolver.DEFAULT_EMPTIES + 1, playersToMove);
+			if (position != null) {
+				positions.add(position);
+			}
+		}
+		ProbCutCalibrator calibrator = new ProbCutCalibrator(maxDepth);
+		calibrator.addPositions(positions, playersToMove, SearchPool.shared());
+		calibrator.fit().save(output);
+		LOGGER.log(Level.INFO, "Wrote ProbCut parameters for {0} positions to {1}", new Object[]{positionCount, output});
+		SearchPool.shared().shutdown();
+	}
+
+	/*
+	    Least-squares fit of y = slope*x + intercept, kept as running sums.
+	 */
+	private static final class Regression {
+		private int samples;
+		private double sumX, sumY, sumXX, sumXY, sumYY;
+
+		private void add(double x, double y) {
+			samples++;
+			sumX += x;
+			sumY += y;
+			sumXX += x*x;
+			sumXY += x*y;
+			sumYY += y*y;
+		}
+
+		private double slope() {
+			double varianceX = samples*sumXX - sumX*sumX;
+			return varianceX == 0 ? 0 : (samples*sumXY - sumX*sumY) / varianceX;
+		}
+
+		private double intercept() {
+			return (sumY - slope()*sumX) / samples;
+		}
+
+		/*
+		    Standard deviation of the residuals y - (slope*x + intercept).
+		 */
+		private double sigma() {
+			double a = slope(), b = intercept();
+			double squaredErrors = sumYY - 2*a*sumXY - 2*b*sumY + a*a*sumXX + 2*a*b*sumX + samples*b*b;
+			return Math.sqrt(Math.max(squaredErrors, 0) / Math.max(samples - 2, 1));
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package player.ai;
+
+import board.Move;
+
+/**
+ * The score of a root move for the player choosing it: exact, or an upper bound if the
+ * search only proved the move to be no better than a move searched before it.
+ */
+public class RootMoveScore {
+	private final Move move;
+	private final double score;
+	private final boolean exact;
+
+	public RootMoveScore(final Move m, final double s, final boolean e) {
+		move = m;
+		score = s;
+		exact = e;
+	}
+
+	public Move getMove() {
+		return move;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	public boolean isExact() {
+		return exact;
+	}
+
+	@Override
+	public String toString() {
+		return move + (exact ? ": " : ": <= ") + score;
+	}
+}
@@ -0,0 +1,40 @@
+package player.ai;
+
+/**
+ * The integer scores of SearchAlgorithm.MTDF_INTEGER, for the player to move. A position
+ * that isn't over scores TDMCNode.eval() in hundredths, rounded and kept below WIN. A
+ * finished game scores exactly: WIN plus the disc difference for a win, minus WIN plus
+ * the (negative) disc difference for a loss, and 0 for a draw. So every win beats every
+ * unfinished position, the bigger wins first, and every score fits in a short.
+ */
+final class Score {
+	static final int SCALE = 100; // Score units per unit of TDMCNode.eval().
+	static final int WIN = 32_000;
+	static final int MAX = WIN + 64; // The best score there is: winning with every disc of the board.
+	static final int MIN = -MAX;
+
+	private Score() {
+	}
+
+	/**
+	 * Returns the score of an unfinished position that TDMCNode.eval() values at eval.
+	 */
+	static int ofEval(double eval) {
+		if (Double.isNaN(eval)) {
+			return 0;
+		}
+		return (int)Math.max(Math.min(Math.round(eval*SCALE), WIN - 1), -(WIN - 1));
+	}
+
+	/**
+	 * Returns the score of a finished game that the player to move ends discDifference discs ahead in.
+	 */
+	static int ofFinalDiscDifference(int discDifference) {
+		if (discDifference > 0) {
+			return WIN + discDifference;
+		} else if (discDifference < 0) {
+			return -WIN + discDifference;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,10 @@
+package player.ai;
+
+/**
+ * How TreeSearcher finds the score of a position to a given depth.
+ */
+public enum SearchAlgorithm {
+	MTDF, // A series of null-window searches for each root move, closing in on its score.
+	PVS, // Principal Variation Search in an aspiration window around the previous iteration's score.
+	MTDF_INTEGER // MTD(f) on the root with integer scores (see Score); sequential, without ProbCut or reductions.
+}
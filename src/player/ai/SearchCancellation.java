@@ -0,0 +1,46 @@
+package player.ai;
+
+import java.time.Duration;
+
+/**
+ * Tells a search when to stop: once cancel() has been called, or once its deadline, if it
+ * has one, has passed. Searches check it at every node, as they do their thread's interrupt
+ * flag, and a cancelled search stops cooperatively, keeping the results it has published.
+ * One token can be shared by every searcher of a move.
+ */
+public class SearchCancellation {
+	private final boolean hasDeadline;
+	private final long deadlineNanos; // On the System.nanoTime() clock.
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Creates a token that is only cancelled by cancel().
+	 */
+	public SearchCancellation() {
+		this.hasDeadline = false;
+		this.deadlineNanos = 0L;
+	}
+
+	private SearchCancellation(long deadlineNanos) {
+		this.hasDeadline = true;
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	/**
+	 * Creates a token that cancels itself once timeLeft has passed from now.
+	 */
+	public static SearchCancellation after(Duration timeLeft) {
+		return new SearchCancellation(System.nanoTime() + timeLeft.toNanos());
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		if (!cancelled && hasDeadline && System.nanoTime() - deadlineNanos >= 0) {
+			cancelled = true;
+		}
+		return cancelled;
+	}
+}
@@ -0,0 +1,11 @@
+package player.ai;
+
+/**
+ * How TDMCAIPlayer spreads its search over the available processors.
+ */
+public enum SearchMode {
+	FIXED_DEPTHS, // One search per depth in a small window, keeping the deepest one to finish.
+	LAZY_SMP, // Every processor deepens the same root, sharing results through the transposition table.
+	YOUNG_BROTHERS, // A single deepening search whose nodes are split over every processor.
+	ROOT_PARALLEL // A single deepening search whose root moves are searched on every processor at once.
+}
@@ -0,0 +1,158 @@
+package player.ai;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The threads the AI players search on. A pool is created once and kept for as long as
+ * the players using it, so that no threads are started or stopped while a move is being
+ * searched. By default every player shares the pool returned by shared().
+ *
+ * There are three kinds of thread:
+ *  - workers, a fixed number of threads that run whole searches (see TreeSearcher),
+ *  - the split pool, a ForkJoinPool of the same size that a single search's nodes are
+ *    split over (see SearchMode.YOUNG_BROTHERS),
+ *  - coordinators, which mostly wait on the split pool and so need no processor of
+ *    their own. These are virtual threads if asked for and the JVM has them.
+ *
+ * Searches are stopped by cancelling their futures rather than by shutting the pool down.
+ */
+public class SearchPool {
+	/*
+	    System properties read by shared(): the number of workers (default: one per
+	    processor) and whether to use virtual threads for coordination (default: false).
+	 */
+	public static final String THREADS_PROPERTY = "othello.search.threads";
+	public static final String VIRTUAL_COORDINATORS_PROPERTY = "othello.search.virtualCoordinators";
+
+	private static final Logger LOGGER = Logger.getLogger(SearchPool.class.getName());
+	private static SearchPool sharedPool;
+
+	private final int workerThreads;
+	private final ThreadPoolExecutor workers;
+	private final ForkJoinPool splitPool;
+	private final ExecutorService coordinators;
+	private final boolean virtualCoordinators; // Did we get virtual threads for the coordinators?
+
+	/**
+	 * Creates a pool with the given number of workers (at least 1), starting them straight away.
+	 * @param virtualCoordinators: run coordination tasks on virtual threads if the JVM supports them.
+	 */
+	public SearchPool(int workerThreads, boolean virtualCoordinators) {
+		this.workerThreads = Math.max(workerThreads, 1);
+		workers = new ThreadPoolExecutor(this.workerThreads, this.workerThreads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), daemonThreads("search-worker-"));
+		workers.prestartAllCoreThreads();
+		splitPool = new ForkJoinPool(this.workerThreads);
+		ExecutorService virtualThreads = virtualCoordinators ? newVirtualThreadExecutor() : null;
+		this.virtualCoordinators = virtualThreads != null;
+		coordinators = virtualThreads != null ? virtualThreads
+				: Executors.newCachedThreadPool(daemonThreads("search-coordinator-"));
+	}
+
+	/**
+	 * Returns the pool shared by every player in this process, creating it the first time
+	 * using the THREADS_PROPERTY and VIRTUAL_COORDINATORS_PROPERTY system properties.
+	 */
+	public static synchronized SearchPool shared() {
+		if (sharedPool == null) {
+			int threads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+			sharedPool = new SearchPool(threads, Boolean.getBoolean(VIRTUAL_COORDINATORS_PROPERTY));
+		}
+		return sharedPool;
+	}
+
+	/**
+	 * Returns the executor that whole searches are run on.
+	 */
+	public ExecutorService workers() {
+		return workers;
+	}
+
+	public ForkJoinPool splitPool() {
+		return splitPool;
+	}
+
+	/**
+	 * Returns the executor for tasks that spend their time waiting on other threads.
+	 */
+	public ExecutorService coordinators() {
+		return coordinators;
+	}
+
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	public int getActiveWorkers() {
+		return workers.getActiveCount();
+	}
+
+	/**
+	 * Returns the number of searches waiting for a free worker.
+	 */
+	public int getQueuedSearches() {
+		return workers.getQueue().size();
+	}
+
+	public long getCompletedSearches() {
+		return workers.getCompletedTaskCount();
+	}
+
+	/**
+	 * Returns the number of tasks split off by one search and taken over by another thread.
+	 */
+	public long getSplitSteals() {
+		return splitPool.getStealCount();
+	}
+
+	public boolean hasVirtualCoordinators() {
+		return virtualCoordinators;
+	}
+
+	/**
+	 * Stops every thread of the pool, interrupting any search still running.
+	 */
+	public void shutdown() {
+		workers.shutdownNow();
+		splitPool.shutdownNow();
+		coordinators.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Workers: %d (%d active, %d queued, %d completed), Split steals: %d, Coordinators: %s",
+				workerThreads, getActiveWorkers(), getQueuedSearches(), getCompletedSearches(), getSplitSteals(),
+				virtualCoordinators ? "virtual" : "platform");
+	}
+
+	private static ThreadFactory daemonThreads(String namePrefix) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, namePrefix + count.getAndIncrement());
+			thread.setDaemon(true); // The pool lives as long as the process, but shouldn't keep it alive.
+			return thread;
+		};
+	}
+
+	/*
+	    Virtual threads only exist from Java 21 on, so they are looked up reflectively.
+	    Returns null if there are none.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			LOGGER.log(Level.INFO, "Virtual threads aren't available, coordinating on platform threads.");
+			return null;
+		}
+	}
+}
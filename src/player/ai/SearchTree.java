@@ -0,0 +1,150 @@
+package player.ai;
+
+import board.OthelloBitBoard;
+import board.TileState;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The tree of TDMCNodes searched by one player, kept from move to move. Each turn the
+ * root is moved down to the node for the new position (after this player's move and the
+ * opponent's reply), so that the children expanded while searching the previous move
+ * don't have to be expanded again.
+ *
+ * Every node keeps its children once they are expanded, so the tree only grows. It is
+ * capped at maxNodes cached nodes: once that many have been expanded, new children are
+ * still created but no longer kept, and when the root moves, the nodes furthest from the
+ * new root are dropped until the tree is back under half the cap.
+ */
+public class SearchTree {
+	public static final long DEFAULT_MAX_NODES = 500_000L;
+
+	private final long maxNodes;
+	private final AtomicLong cachedNodes = new AtomicLong(); // Nodes kept as the children of other nodes.
+	private TDMCNode root;
+	private volatile PatternEvaluator patternEvaluator; // Evaluates the nodes instead of their position weights, or null.
+	private volatile EvalCache evalCache; // Shared by the nodes to remember their evaluations, or null.
+
+	public SearchTree() {
+		this(DEFAULT_MAX_NODES);
+	}
+
+	public SearchTree(long maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Returns the node for board with playerColor to move, reusing the current root or one
+	 * of its (already expanded) children or grandchildren if one of them is that position,
+	 * and makes it the new root.
+	 */
+	public synchronized TDMCNode rootFor(OthelloBitBoard board, TileState playerColor) {
+		TDMCNode reused = root == null ? null : findPosition(board, TDMCNode.playerToMove(board, playerColor));
+		if (reused == null) {
+			// The tree outlives the move, so it can't share the caller's board, which will change.
+			root = new TDMCNode(new OthelloBitBoard(board), playerColor, this);
+			cachedNodes.set(0);
+		} else if (reused != root) {
+			root = reused;
+			trim(maxNodes / 2);
+		}
+		return root;
+	}
+
+	/**
+	 * Makes the nodes of this tree evaluate positions with patternEvaluator (see
+	 * TDMCNode.eval()), or with their own position weights if it is null.
+	 */
+	public void setPatternEvaluator(PatternEvaluator patternEvaluator) {
+		this.patternEvaluator = patternEvaluator;
+		EvalCache cache = evalCache;
+		if (cache != null) {
+			cache.clear(); // Its scores came from the other evaluation.
+		}
+	}
+
+	/**
+	 * Makes the nodes of this tree remember their evaluations in evalCache, or stop if it is null.
+	 */
+	public void setEvalCache(EvalCache evalCache) {
+		this.evalCache = evalCache;
+	}
+
+	EvalCache getEvalCache() {
+		return evalCache;
+	}
+
+	PatternEvaluator getPatternEvaluator() {
+		return patternEvaluator;
+	}
+
+	/**
+	 * Returns the number of nodes currently kept in the tree.
+	 */
+	public long getCachedNodes() {
+		return cachedNodes.get();
+	}
+
+	/**
+	 * Called by a node of this tree before it keeps count new children.
+	 * Returns false if that would take the tree over its cap.
+	 */
+	boolean reserve(int count) {
+		if (cachedNodes.get() + count > maxNodes) {
+			return false;
+		}
+		cachedNodes.addAndGet(count);
+		return true;
+	}
+
+	/*
+	    Looks for the position among the root, its children and its grandchildren, without expanding any node.
+	 */
+	private TDMCNode findPosition(OthelloBitBoard board, TileState playerToMove) {
+		Queue<TDMCNode> level = new ArrayDeque<>();
+		level.add(root);
+		for (int depth = 0; depth <= 2; depth++) {
+			Queue<TDMCNode> nextLevel = new ArrayDeque<>();
+			for (TDMCNode node : level) {
+				if (node.getCurrentPlayerColor() == playerToMove && node.getBoard().equals(board)) {
+					return node;
+				}
+				List<TDMCNode> children = node.getCachedChildren();
+				if (children != null) {
+					nextLevel.addAll(children);
+				}
+			}
+			level = nextLevel;
+		}
+		return null;
+	}
+
+	/*
+	    Walks the tree breadth first from the root, keeping the children of nodes while
+	    there is room for them under keptNodes, and dropping the children of every node
+	    reached after that. The nodes dropped are the deepest, which are the least likely
+	    to be searched again.
+	 */
+	private void trim(long keptNodes) {
+		long kept = 0;
+		Queue<TDMCNode> queue = new ArrayDeque<>();
+		queue.add(root);
+		while (!queue.isEmpty()) {
+			TDMCNode node = queue.remove();
+			List<TDMCNode> children = node.getCachedChildren();
+			if (children == null) {
+				continue;
+			}
+			if (kept + children.size() > keptNodes) {
+				node.releaseChildren();
+			} else {
+				kept += children.size();
+				queue.addAll(children);
+			}
+		}
+		cachedNodes.set(kept);
+	}
+}
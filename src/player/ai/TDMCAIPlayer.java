@@ -8,43 +8,317 @@ import player.Player;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class TDMCAIPlayer extends Player {
     private Duration totalTimeRemaining = Duration.ofSeconds(119); //How much time the AI has to compute all its remaining moves during the game
 	private int greatestDepthLastMove = 5;
+	/*
+	    Shared by all the searchers of this player and kept from move to move, since most of
+	    the positions searched for one move come up again in the search for the next.
+	 */
+	private static final int TABLE_ENTRIES = 1 << 20;
+	private final TranspositionTable transpositionTable = new TranspositionTable(TABLE_ENTRIES);
+	private final SearchMode searchMode;
+	private final SearchPool searchPool; // The threads searches are run on, kept for the whole game.
+	private final SearchTree searchTree; // The nodes searched, kept from move to move.
+	/*
+	    The evaluations of the positions searched, shared by every search thread and kept
+	    from move to move like the table, since the same leaves are evaluated by each pass.
+	 */
+	private static final int EVAL_CACHE_ENTRIES = 1 << 18;
+	private EvalCache evalCache = new EvalCache(EVAL_CACHE_ENTRIES);
+	private int endgameEmpties = EndgameSolver.DEFAULT_EMPTIES; // Positions with this few empty tiles are solved exactly.
+	private boolean pondering = false; // Keep searching while the opponent thinks?
+	private SearchPool ponderPool; // The thread of this player's own that it ponders on, while pondering is on.
+	private Future<?> ponderSearch; // Null when not pondering.
+	private AtomicReference<TreeSearchResult> ponderResult;
+	private SearchAlgorithm searchAlgorithm = SearchAlgorithm.MTDF;
+	private ProbCut probCut; // Parameters of selective search, or null to search every node fully.
+	private LateMoveReductions reductions; // Or null to search every move to the full depth.
 
 	public TDMCAIPlayer(TileState color) {
+		this(color, SearchMode.FIXED_DEPTHS);
+	}
+
+	public TDMCAIPlayer(TileState color, SearchMode searchMode) {
+		this(color, searchMode, SearchPool.shared());
+	}
+
+	public TDMCAIPlayer(TileState color, SearchMode searchMode, SearchPool searchPool) {
+		this(color, searchMode, searchPool, SearchTree.DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * @param maxTreeNodes: the most nodes of the search tree to keep between moves (see SearchTree).
+	 */
+	public TDMCAIPlayer(TileState color, SearchMode searchMode, SearchPool searchPool, long maxTreeNodes) {
 		super(color);
 		totalTimeRemaining = Duration.ofSeconds(119);
+		this.searchMode = searchMode;
+		this.searchPool = searchPool;
+		this.searchTree = new SearchTree(maxTreeNodes);
+		searchTree.setEvalCache(evalCache);
+	}
+
+	/**
+	 * Sets the number of evaluations to cache (see EvalCache). 0 turns the cache off.
+	 */
+	public void setEvalCacheEntries(int entries) {
+		evalCache = entries > 0 ? new EvalCache(entries) : null;
+		searchTree.setEvalCache(evalCache);
+	}
+
+	/**
+	 * Sets the number of empty tiles at or below which positions are solved to the end of
+	 * the game instead of searched heuristically. 0 turns the endgame solver off.
+	 */
+	public void setEndgameEmpties(int endgameEmpties) {
+		this.endgameEmpties = endgameEmpties;
+	}
+
+	/**
+	 * Sets the algorithm each search uses to score positions (see SearchAlgorithm).
+	 */
+	public void setSearchAlgorithm(SearchAlgorithm searchAlgorithm) {
+		if ((searchAlgorithm == SearchAlgorithm.MTDF_INTEGER) != (this.searchAlgorithm == SearchAlgorithm.MTDF_INTEGER)) {
+			transpositionTable.clear(); // Its scores are on the other algorithm's scale.
+		}
+		this.searchAlgorithm = searchAlgorithm;
+	}
+
+	/**
+	 * Makes the search selective, pruning with Multi-ProbCut with the given parameters (see
+	 * ProbCut and ProbCutCalibrator), or turns selective search off if probCut is null.
+	 */
+	public void setProbCut(ProbCut probCut) {
+		this.probCut = probCut;
+	}
+
+	/**
+	 * Makes this player evaluate positions with patternEvaluator instead of TDMCNode's
+	 * position weights, or go back to them if it is null. The transposition table is
+	 * cleared, since the scores in it came from the other evaluation.
+	 */
+	public void setPatternEvaluator(PatternEvaluator patternEvaluator) {
+		searchTree.setPatternEvaluator(patternEvaluator);
+		transpositionTable.clear();
+	}
+
+	/**
+	 * Makes the search reduce the depth of the moves searched late at each node (see
+	 * LateMoveReductions), or search all of them to the full depth if reductions is null.
+	 */
+	public void setLateMoveReductions(LateMoveReductions reductions) {
+		this.reductions = reductions;
+	}
+
+	/**
+	 * Sets whether to keep searching on the opponent's time. After each move, the position
+	 * it leads to is searched until the opponent has replied. That covers every reply, and
+	 * the results are kept in the transposition table for the search of this player's next
+	 * move. Pondering runs on a single thread of this player's own, not on the search
+	 * workers: those may be shared with the opponent (see SearchPool.shared()), whose search
+	 * would then wait behind the pondering for its whole turn.
+	 */
+	public void setPondering(boolean pondering) {
+		this.pondering = pondering;
+		if (pondering && ponderPool == null) {
+			ponderPool = new SearchPool(1, false);
+		} else if (!pondering && ponderPool != null) {
+			stopPondering();
+			ponderPool.shutdown();
+			ponderPool = null;
+		}
+	}
+
+	/**
+	 * Starts searching the position after this player plays move on board, from the opponent's side.
+	 */
+	private void startPondering(OthelloBitBoard board, Move move) {
+		OthelloBitBoard ponderBoard = new OthelloBitBoard(board);
+		ponderBoard.makeMove(move, this.color());
+		TileState opponentColor = this.color().opposite();
+		if (ponderBoard.getValidMovesAsBits(opponentColor) == 0L && ponderBoard.getValidMovesAsBits(this.color()) == 0L) {
+			return; // The game is over.
+		}
+		transpositionTable.newSearch();
+		TDMCNode ponderRoot = searchTree.rootFor(ponderBoard, opponentColor);
+		ponderResult = new AtomicReference<>(new TreeSearchResult(0, null));
+		int startDepth = Math.max(greatestDepthLastMove - 2, 4);
+		ponderSearch = ponderPool.workers().submit(newIterativeSearcher(ponderRoot, 0, startDepth, null, null, ponderResult));
+	}
+
+	/**
+	 * Stops pondering, and returns whether this player was pondering at all. Only returns
+	 * once the ponder search has exited, since it expands the same SearchTree as the search
+	 * of the next move.
+	 */
+	private boolean stopPondering() {
+		if (ponderSearch == null) {
+			return false;
+		}
+		ponderSearch.cancel(true);
+		ponderSearch = null;
+		try {
+			// The ponder pool's one worker runs its tasks in order, so once this has run the search has exited:
+			ponderPool.workers().submit(() -> { }).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Ponder pool failed", e.getCause());
+		}
+		Logger.getLogger(TDMCAIPlayer.class.getName()).log(Level.INFO,
+				"Pondered to depth {0}", ponderResult.get().getDepth());
+		return true;
+	}
+
+	/**
+	 * Returns the move with the best final disc difference, or null if the position can't
+	 * be solved in half of timeToFindMove (the heuristic search gets what's left).
+	 */
+	private Move solveEndgame(OthelloBitBoard board, TileState playerColor, Instant startTime, Duration timeToFindMove) {
+		Future<EndgameSolver.Solution> solving = searchPool.workers().submit(
+				() -> new EndgameSolver().solve(board, playerColor, true));
+		EndgameSolver.Solution solution = null;
+		try {
+			solution = solving.get(timeToFindMove.toMillis() / 2, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			solving.cancel(true);
+		} catch (InterruptedException e) {
+			solving.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Endgame solver failed", e.getCause());
+		}
+		if (solution == null) {
+			Logger.getLogger(TDMCAIPlayer.class.getName()).log(Level.INFO,
+					"Endgame not solved in time, searching heuristically");
+			return null;
+		}
+		Logger.getLogger(TDMCAIPlayer.class.getName()).log(Level.INFO,
+				"Endgame solved: disc difference {0}, Nodes: {1}, Time elapsed: {2}ms",
+				new Object[]{solution.getDiscDifference(), solution.getNodes(),
+						Duration.between(startTime, Instant.now()).toMillis()});
+		return solution.getMove();
+	}
+
+	/**
+	 * Returns the best move of the deepest iteration completed by a Lazy SMP search
+	 * (see IterativeDeepeningSearcher) that runs on every search worker until the time is up.
+	 */
+	private Move lazySMPMinMax(TDMCNode root, Instant startTime, Duration timeToFindMove) {
+		return iterativeDeepeningMinMax(root, startTime, timeToFindMove,
+				searchPool.getWorkerThreads(), searchPool.workers(), null, null);
+	}
+
+	/**
+	 * Returns the best move of the deepest iteration completed by a single deepening
+	 * search that splits each node over the split pool with Young Brothers Wait.
+	 */
+	private Move youngBrothersMinMax(TDMCNode root, Instant startTime, Duration timeToFindMove) {
+		// The searcher itself only waits on the split pool, so it runs as a coordinator:
+		return iterativeDeepeningMinMax(root, startTime, timeToFindMove,
+				1, searchPool.coordinators(), searchPool.splitPool(), null);
+	}
+
+	/**
+	 * Returns the best move of the deepest iteration completed by a single deepening
+	 * search that searches the root moves of each depth concurrently on the split pool.
+	 */
+	private Move rootParallelMinMax(TDMCNode root, Instant startTime, Duration timeToFindMove) {
+		return iterativeDeepeningMinMax(root, startTime, timeToFindMove,
+				1, searchPool.coordinators(), null, searchPool.splitPool());
+	}
+
+	/**
+	 * Runs the given number of IterativeDeepeningSearchers on root until the time is up,
+	 * and returns the best move of the deepest search any of them completed. Each search is
+	 * split over splitPool, or has its root moves searched in parallel on rootPool, if not null.
+	 */
+	private Move iterativeDeepeningMinMax(TDMCNode root, Instant startTime, Duration timeToFindMove,
+			int threads, ExecutorService executor, ForkJoinPool splitPool, ForkJoinPool rootPool) {
+		AtomicReference<TreeSearchResult> deepestResult = new AtomicReference<>(
+				newSearcher(root, 3).call()); // As in timedMinMax.
+		int startDepth = Math.max(greatestDepthLastMove - 2, 4);
+		Duration timeRemaining = timeToFindMove.minus(Duration.between(startTime, Instant.now()));
+		long millisToSearch = Math.max(timeRemaining.toMillis() - 250L, 0L);
+		SearchCancellation cancellation = SearchCancellation.after(Duration.ofMillis(millisToSearch));
+		List<Callable<Object>> searchers = new ArrayList<>(threads);
+		for (int id = 0; id < threads; id++) {
+			IterativeDeepeningSearcher searcher = newIterativeSearcher(root, id, startDepth, splitPool, rootPool, deepestResult);
+			searcher.setCancellation(cancellation);
+			searchers.add(Executors.callable(searcher));
+		}
+		try {
+			// The searchers stop themselves at the deadline; any still running a little later are interrupted:
+			executor.invokeAll(searchers, millisToSearch + 50L, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		greatestDepthLastMove = deepestResult.get().getDepth();
+		ForkJoinPool pool = splitPool != null ? splitPool : rootPool;
+		Logger.getLogger(TDMCAIPlayer.class.getName()).log(Level.INFO,
+				"Depth: {0}{1}, Threads: {2}, Time elapsed: {3}ms",
+				new Object[]{greatestDepthLastMove, deepestResult.get().isComplete() ? "" : " (incomplete)",
+						pool == null ? threads : pool.getParallelism(),
+						Duration.between(startTime, Instant.now()).toMillis()});
+		if (!deepestResult.get().getRootScores().isEmpty()) {
+			Logger.getLogger(TDMCAIPlayer.class.getName()).log(Level.FINE,
+					"Root move scores: {0}", deepestResult.get().getRootScores());
+		}
+		return deepestResult.get().getMove();
+	}
+
+	/**
+	 * Returns a sequential searcher of root to depth with this player's search settings.
+	 */
+	private TreeSearcher newSearcher(TDMCNode root, int depth) {
+		TreeSearcher searcher = new TreeSearcher(root, depth, transpositionTable, 0, null, searchAlgorithm);
+		searcher.setProbCut(probCut);
+		searcher.setLateMoveReductions(reductions);
+		return searcher;
+	}
+
+	private IterativeDeepeningSearcher newIterativeSearcher(TDMCNode root, int id, int startDepth,
+			ForkJoinPool splitPool, ForkJoinPool rootPool, AtomicReference<TreeSearchResult> deepestResult) {
+		IterativeDeepeningSearcher searcher = new IterativeDeepeningSearcher(root, transpositionTable, id,
+				startDepth, splitPool, searchAlgorithm, deepestResult);
+		searcher.setProbCut(probCut);
+		searcher.setLateMoveReductions(reductions);
+		searcher.setRootPool(rootPool);
+		return searcher;
 	}
 
 	/**
 	 * Returns the best move predicted by the search result with greatest depth within the time limit timeToFindMove.
 	 */
-	private Move timedMinMax(OthelloBitBoard board, TileState playerColor, Instant startTime, Duration timeToFindMove) {
-		Move bestMove = new TreeSearcher(board, this.color(), 3).call().getMove(); // Basic 3-depth. If this is running out of time, there are other problems.
+	private Move timedMinMax(TDMCNode root, Instant startTime, Duration timeToFindMove) {
+		Move bestMove = newSearcher(root, 3).call().getMove(); // Basic 3-depth. If this is running out of time, there are other problems.
 		int greatestDepthThisMove = 3;
-		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() - 1);
-		ExecutorCompletionService<TreeSearchResult> completionPool = new ExecutorCompletionService<>(executor);
+		ExecutorCompletionService<TreeSearchResult> completionPool = new ExecutorCompletionService<>(searchPool.workers());
+		List<Future<TreeSearchResult>> searches = new ArrayList<>();
 		// Temporary solution: want a shifting window of depths to consider. Currently hard resets to 3 upon failure:
 		int lowerBound = Math.max(greatestDepthLastMove - 2, 4);
 		int upperBound = lowerBound + 2;
 		int remainingSearches = upperBound - lowerBound + 1;
 		for (int depth = lowerBound; depth <= upperBound; depth++) {
-			completionPool.submit(new TreeSearcher(board, playerColor, depth));
+			TreeSearcher searcher = newSearcher(root, depth);
+			searcher.setFirstRootMove(bestMove);
+			searches.add(completionPool.submit(searcher));
 		}
 		// While there's still time left, find the complete search with maximal depth:
 		try {
-			while (!executor.isTerminated() && remainingSearches > 0) {
+			while (remainingSearches > 0) {
 				Duration timeSpent = Duration.between(startTime, Instant.now());
 				Duration timeRemaining = timeToFindMove.minus(timeSpent);
 				if (timeRemaining.toMillis() < 250L) {
-					executor.shutdownNow();
 					break;
 				}
 				Future<TreeSearchResult> future = completionPool.poll(25, TimeUnit.MILLISECONDS);
@@ -60,7 +334,8 @@ public class TDMCAIPlayer extends Player {
 		} catch (InterruptedException | ExecutionException e) {
 			e.printStackTrace();
 		}
-		executor.shutdownNow();
+		searches.forEach(search -> search.cancel(true)); // Stop the searches that haven't finished in time.
+		// A search that didn't finish only proved its move against the 3-depth move, not against bestMove, so it isn't used.
 		greatestDepthLastMove = greatestDepthThisMove;
         Logger.getLogger(TDMCAIPlayer.class.getName()).log(Level.INFO,
                 "Depth: {0}, Time elapsed: {1}ms",
@@ -71,8 +346,20 @@ public class TDMCAIPlayer extends Player {
 
 	@Override
 	public Move nextMove(OthelloBoard board) {
+		// The pondering searches have already started this search's generation of the table:
+		if (!stopPondering()) {
+			transpositionTable.newSearch();
+		}
+		Move bestMove = chooseMove(board);
+		if (pondering) {
+			startPondering((OthelloBitBoard)board, bestMove);
+		}
+		return bestMove;
+	}
+
+	private Move chooseMove(OthelloBoard board) {
 		Instant startTime = Instant.now();
-		TDMCNode root = new TDMCNode((OthelloBitBoard)board, this.color());
+		TDMCNode root = searchTree.rootFor((OthelloBitBoard)board, this.color());
 		List<TDMCNode> children = root.getChildren();
         // If there's only one move possible, take it:
 		if (children.size() == 1) {
@@ -82,17 +369,44 @@ public class TDMCAIPlayer extends Player {
         else if (board.getTurnNumber() == 0) {
             return children.get(new Random().nextInt(children.size())).getMove();
         }
-		Duration timeForTurn = allocateTime(board); // How much time the AI is being given to complete this turn.
-		Move bestMove = timedMinMax((OthelloBitBoard)board, this.color(), startTime, timeForTurn);
+		Duration timeForTurn = allocateTime(board, totalTimeRemaining); // How much time the AI is being given to complete this turn.
+		Move bestMove = null;
+		if (board.getScoreOf(TileState.EMPTY) <= endgameEmpties) {
+			bestMove = solveEndgame((OthelloBitBoard)board, this.color(), startTime, timeForTurn);
+		}
+		if (bestMove == null) {
+			bestMove = searchMove(root, startTime, timeForTurn);
+		}
 		Duration turnRuntime = Duration.between(startTime, Instant.now()); // How much time the AI actually used to complete the turn
 		totalTimeRemaining = totalTimeRemaining.minus(turnRuntime);
         Logger.getLogger(TDMCAIPlayer.class.getName()).log(Level.INFO,
-                "Time left for future AI moves: {0}s",
-                totalTimeRemaining.getSeconds());
+                "Time left for future AI moves: {0}s, {1}, Tree nodes: {2}, Eval cache: {3}",
+                new Object[]{totalTimeRemaining.getSeconds(), searchPool, searchTree.getCachedNodes(),
+						evalCache == null ? "off" : evalCache});
 		return bestMove;
 	}
 
-	private Duration allocateTime(OthelloBoard board) {
+	/**
+	 * Returns the best move found by the heuristic search of this player's searchMode.
+	 */
+	private Move searchMove(TDMCNode root, Instant startTime, Duration timeForTurn) {
+		switch (searchMode) {
+		case LAZY_SMP:
+			return lazySMPMinMax(root, startTime, timeForTurn);
+		case YOUNG_BROTHERS:
+			return youngBrothersMinMax(root, startTime, timeForTurn);
+		case ROOT_PARALLEL:
+			return rootParallelMinMax(root, startTime, timeForTurn);
+		default:
+			return timedMinMax(root, startTime, timeForTurn);
+		}
+	}
+
+	/**
+	 * Returns how long to spend on the move for board, out of the totalTimeRemaining for the
+	 * rest of the game. Shared with the other AI players, so that they play on the same clock.
+	 */
+	static Duration allocateTime(OthelloBoard board, Duration totalTimeRemaining) {
 		int currentTurn = board.getTurnNumber();
 		int maxTurns = board.getBoardSize()*board.getBoardSize() - 4;
 		int turnsRemaining = maxTurns - currentTurn;
@@ -56,30 +56,108 @@ public class TDMCNode extends Node {
 //		 0.93, -0.44,  0.55,  0.22, -0.15,  0.74, -0.57,  0.97
 //	};
 
+	/*
+	    The position weights of each stage summed over each row of the board, for each of the
+	    256 sets of tiles a player can hold in that row: ROW_WEIGHTS[stage][row][row bits].
+	    Generated from the weight arrays above, so that eval() needs one lookup per row.
+	 */
+	private static final double[][][] ROW_WEIGHTS = new double[Stage.values().length][8][256];
+	static {
+		for (Stage stage : Stage.values()) {
+			final double[] weights = getPositionWeights(stage);
+			for (int row = 0; row < 8; row++) {
+				for (int rowBits = 0; rowBits < 256; rowBits++) {
+					double sum = 0;
+					for (int col = 0; col < 8; col++) {
+						if ((rowBits & (1 << col)) != 0) {
+							sum += weights[row*8 + col];
+						}
+					}
+					ROW_WEIGHTS[stage.ordinal()][row][rowBits] = sum;
+				}
+			}
+		}
+	}
+
 	private static final long CORNER_MASK = 0x8100000000000081L;
-	private List<TDMCNode> children;
-	private boolean childrenComputed = false;
+	private volatile List<TDMCNode> children; // Null until getChildren() is first called and kept.
 	private final OthelloBitBoard board;
+	private final SearchTree tree; // The tree this node belongs to, or null if it isn't kept between searches.
 
 	public TDMCNode(OthelloBitBoard state, TileState playerColor) {
-		super(state.getBoardSize(), playerColor);
+		this(state, playerColor, null);
+	}
+
+	/**
+	 * Creates a node of tree, whose children are only kept while the tree has room for them.
+	 */
+	TDMCNode(OthelloBitBoard state, TileState playerColor, SearchTree tree) {
+		super(state.getBoardSize(), playerToMove(state, playerColor));
 		board = state;
-		if (board.getValidMovesAsBits(playerColor) == 0L) {
-			if (board.getValidMovesAsBits(opponentColor) == 0L)
-				return;
-			playerColor = opponentColor;
-			opponentColor = playerColor.opposite();
+		this.tree = tree;
+	}
+
+	/**
+	 * Returns the colour of the player who moves next on the board when it is playerColor's turn:
+	 * the opponent if playerColor has to pass, otherwise playerColor.
+	 */
+	static TileState playerToMove(OthelloBitBoard board, TileState playerColor) {
+		if (board.getValidMovesAsBits(playerColor) == 0L && board.getValidMovesAsBits(playerColor.opposite()) != 0L) {
+			return playerColor.opposite();
 		}
+		return playerColor;
 	}
 
+	/**
+	 * Returns how many moves the opponent has on average after each move of this player (0
+	 * if there are none), from the bitboards alone rather than by expanding the children.
+	 */
 	private double estimateMobility() {
-		return this.getChildren().stream()
-				.mapToInt(child -> Long.bitCount(((OthelloBitBoard)child.getBoard()).getValidMovesAsBits(opponentColor)))
-				.average()
-				.orElse(0);
+		final long playerBoard = board.getBitBoardOf(playerColor);
+		final long opponentBoard = board.getBitBoardOf(opponentColor);
+		final long moves = board.getValidMovesAsBits(playerColor);
+		if (moves == 0L) {
+			return 0;
+		}
+		int replies = 0;
+		for (long remaining = moves; remaining != 0L; remaining &= remaining - 1) {
+			final long move = remaining & -remaining;
+			final long flips = OthelloBitBoard.getFlips(move, playerBoard, opponentBoard);
+			replies += Long.bitCount(OthelloBitBoard.computeLegalMoves(opponentBoard ^ flips, playerBoard | flips | move));
+		}
+		return (double) replies / Long.bitCount(moves);
 	}
 
+	/**
+	 * Returns the value of this position for the player to move, from the tree's evaluation
+	 * cache if it has one and the position is in it.
+	 */
 	public double eval() {
+		EvalCache cache = tree == null ? null : tree.getEvalCache();
+		if (cache == null) {
+			return evaluate();
+		}
+		final long key = board.getZobristKey(playerColor);
+		double value = cache.probe(key);
+		if (Double.isNaN(value)) {
+			value = evaluate();
+			cache.store(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the integer score of this position for the player to move (see Score): exact
+	 * if the game is over, otherwise eval() in hundredths.
+	 */
+	int evalScore() {
+		if (isTerminal()) {
+			return Score.ofFinalDiscDifference(board.getScoreOf(playerColor) - board.getScoreOf(opponentColor));
+		}
+		return Score.ofEval(eval());
+	}
+
+	private double evaluate() {
 		// Game end conditions:
 		if (this.isTerminal() && board.getHighestScorer() == playerColor) {
             return Double.POSITIVE_INFINITY;
@@ -87,7 +165,11 @@ public class TDMCNode extends Node {
             return Double.NEGATIVE_INFINITY;
         }
 		Stage currentStage = getStage(board);
-		final double[] newPositionWeights = getPositionWeights(currentStage);//NEW_WEIGHTS;
+		PatternEvaluator patterns = tree == null ? null : tree.getPatternEvaluator();
+		if (patterns != null) {
+			return patterns.eval(board, playerColor, currentStage);
+		}
+		final double[][] rowWeights = ROW_WEIGHTS[currentStage.ordinal()];
 		double value = 0; //Total value for the player of this board configuration
 		double legalMoveWeight = 0, mobilityWeight = 0, stableTilesWeight = 0, ownTilesWeight = 0;
 		switch (currentStage) {
@@ -107,18 +189,19 @@ public class TDMCNode extends Node {
 		}
 		long playerBoard = board.getBitBoardOf(playerColor);
 		long opponentBoard = board.getBitBoardOf(opponentColor);
-		for (int i = 0; i < boardSize*boardSize; i++) {
-			long pos = 0x1L << i;
-			if ((playerBoard & pos) != 0L) {
-				value += newPositionWeights[i];
-			} else if ((opponentBoard & pos) != 0L) {
-				value -= newPositionWeights[i];
-			}
+		for (int row = 0; row < 8; row++) {
+			final int shift = row*8;
+			value += rowWeights[row][(int)(playerBoard >>> shift) & 0xFF]
+					- rowWeights[row][(int)(opponentBoard >>> shift) & 0xFF];
 		}
 		
 		value += legalMoveWeight*(Long.bitCount(board.getValidMovesAsBits(playerColor)));
-		value += stableTilesWeight*(board.getStableTileCount(playerColor));
-		value += mobilityWeight*estimateMobility();
+		if (stableTilesWeight != 0) { // Stability is only computed when it contributes to the value.
+			value += stableTilesWeight*(board.getStableTileCount(playerColor));
+		}
+		if (mobilityWeight != 0) { // Mobility is only estimated when it contributes to the value.
+			value += mobilityWeight*estimateMobility();
+		}
 		value += ownTilesWeight*(board.getScoreOf(playerColor));
 		return value;
 	}
@@ -128,22 +211,41 @@ public class TDMCNode extends Node {
 		return board;
 	}
 
-	public List<TDMCNode> getChildren() {	
-		if(!childrenComputed) {
+	public List<TDMCNode> getChildren() {
+		// Nodes can be searched by several threads, so the children are published through one volatile write.
+		List<TDMCNode> computedChildren = children;
+		if (computedChildren == null) {
 			List<Move> validMoves = board.getValidMoves(playerColor);
 			TDMCNode[] childrenArr = new TDMCNode[validMoves.size()];
 			for (int i = 0; i < validMoves.size(); i++) {
 				OthelloBitBoard b = new OthelloBitBoard(board);
 				b.makeMove(validMoves.get(i), playerColor);
-				childrenArr[i] = new TDMCNode(b, opponentColor);
+				childrenArr[i] = new TDMCNode(b, opponentColor, tree);
+			}
+			computedChildren = Arrays.asList(childrenArr);
+			if (tree == null || tree.reserve(childrenArr.length)) {
+				children = computedChildren;
 			}
-			children = Arrays.asList(childrenArr);
-			childrenComputed = true;
 		}
+		return computedChildren;
+	}
+
+	/**
+	 * Returns the children of this node if they have been expanded and kept, otherwise null.
+	 */
+	List<TDMCNode> getCachedChildren() {
 		return children;
 	}
 
-	private double[] getPositionWeights(Stage stage) {
+	/**
+	 * Drops the children of this node (and so the whole subtree below it), which are
+	 * expanded again if they are needed.
+	 */
+	void releaseChildren() {
+		children = null;
+	}
+
+	static double[] getPositionWeights(Stage stage) {
 		switch (stage) {
 		case INITIAL:
 			return INITIAL_WEIGHTS;
@@ -156,6 +258,13 @@ public class TDMCNode extends Node {
 		}
 	}
 
+	/**
+	 * Returns the stage of the game this node is in, which decides the weights of eval().
+	 */
+	Stage getStage() {
+		return getStage(board);
+	}
+
 	private Stage getStage(OthelloBitBoard board) {
 		if (twoCornersWithSameColor(board)) {
             return Stage.END;
@@ -0,0 +1,137 @@
+package player.ai;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size transposition table that can be shared by any number of search threads
+ * without locking. Each entry is three longs: the packed data (depth, bound, best move
+ * and age), the bits of the score, kept as a double so that it comes back exactly as the
+ * search returned it, and the position key xor-ed with both. A reader only accepts an
+ * entry if the three words xor back to the key it is looking for, so an entry that is
+ * torn by two threads writing at once is simply treated as a miss.
+ *
+ * The table is split into buckets of two entries. A new result replaces an entry for
+ * the same position, otherwise the entry left over from an older search or, failing
+ * that, the one searched to the lesser depth.
+ */
+public class TranspositionTable {
+	/*
+	    Bound types of a stored score. They are never 0, so that no stored entry has data 0.
+	 */
+	public static final int EXACT = 1, LOWER_BOUND = 2, UPPER_BOUND = 3;
+	public static final int NO_MOVE = -1;
+
+	private static final int ENTRY_LONGS = 3, BUCKET_ENTRIES = 2;
+	private static final int DEPTH_SHIFT = 32, BOUND_SHIFT = 40, MOVE_SHIFT = 42, AGE_SHIFT = 52;
+
+	private final long[] table; // For entry i: table[3i] = key ^ data ^ score bits, table[3i + 1] = data, table[3i + 2] = score bits.
+	private final int bucketMask;
+	private volatile int age = 0; // Incremented for each new search, so old entries are replaced first.
+
+	/**
+	 * Creates a table with room for at least the given number of entries (rounded up to a power of two).
+	 */
+	public TranspositionTable(final int entries) {
+		int buckets = Integer.highestOneBit(Math.max(entries / BUCKET_ENTRIES, 1) * 2 - 1);
+		table = new long[buckets * BUCKET_ENTRIES * ENTRY_LONGS];
+		bucketMask = buckets - 1;
+	}
+
+	/**
+	 * Marks the start of a search for a new move: entries from earlier searches stay usable,
+	 * but are the first to be replaced.
+	 */
+	public void newSearch() {
+		age = (age + 1) & 0xFF;
+	}
+
+	public void clear() {
+		Arrays.fill(table, 0L);
+	}
+
+	/**
+	 * Returns the data stored for the position with the given key, or 0 if it isn't in the table.
+	 * The fields of the data are read with depthOf, boundOf and moveOf, and its score with scoreOf.
+	 */
+	public long probe(final long key) {
+		int index = firstEntryOf(key);
+		for (int i = 0; i < BUCKET_ENTRIES; i++, index += ENTRY_LONGS) {
+			long data = table[index + 1];
+			if ((table[index] ^ data ^ table[index + 2]) == key && data != 0L) {
+				return data;
+			}
+		}
+		return 0L;
+	}
+
+	/**
+	 * Returns the score stored with data, which probe(key) returned, for the position with the
+	 * given key: its value for the player to move. Returns NaN if the entry has been replaced
+	 * by another thread since it was probed.
+	 */
+	public double scoreOf(final long key, final long data) {
+		int index = firstEntryOf(key);
+		for (int i = 0; i < BUCKET_ENTRIES; i++, index += ENTRY_LONGS) {
+			long scoreBits = table[index + 2];
+			if (table[index + 1] == data && (table[index] ^ data ^ scoreBits) == key) {
+				return Double.longBitsToDouble(scoreBits);
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Stores the result of searching the position with the given key.
+	 * @param depth the depth the position was searched to.
+	 * @param bound EXACT, LOWER_BOUND or UPPER_BOUND.
+	 * @param score the score of the position for the player to move.
+	 * @param move the tile number (row*size + col) of the best move found, or NO_MOVE.
+	 */
+	public void store(final long key, final int depth, final int bound, final double score, final int move) {
+		final int currentAge = age;
+		final long scoreBits = Double.doubleToRawLongBits(score);
+		long data = ((long)Math.min(Math.max(depth, 0), 0xFF) << DEPTH_SHIFT)
+				| ((long)bound << BOUND_SHIFT)
+				| ((long)(move + 1) << MOVE_SHIFT)
+				| ((long)currentAge << AGE_SHIFT);
+		int first = firstEntryOf(key);
+		int replace = first;
+		int replaceWorth = Integer.MAX_VALUE;
+		for (int i = 0, index = first; i < BUCKET_ENTRIES; i++, index += ENTRY_LONGS) {
+			long oldData = table[index + 1];
+			if ((table[index] ^ oldData ^ table[index + 2]) == key || oldData == 0L) {
+				replace = index;
+				break;
+			}
+			// Entries from older searches are worth less than any entry from this one:
+			int worth = ageOf(oldData) == currentAge ? depthOf(oldData) + 1 : 0;
+			if (worth < replaceWorth) {
+				replaceWorth = worth;
+				replace = index;
+			}
+		}
+		table[replace] = key ^ data ^ scoreBits;
+		table[replace + 1] = data;
+		table[replace + 2] = scoreBits;
+	}
+
+	private int firstEntryOf(final long key) {
+		return ((int)(key ^ (key >>> 32)) & bucketMask) * BUCKET_ENTRIES * ENTRY_LONGS;
+	}
+
+	public static int depthOf(final long data) {
+		return (int)(data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	public static int boundOf(final long data) {
+		return (int)(data >>> BOUND_SHIFT) & 0x3;
+	}
+
+	public static int moveOf(final long data) {
+		return ((int)(data >>> MOVE_SHIFT) & 0x3FF) - 1;
+	}
+
+	private static int ageOf(final long data) {
+		return (int)(data >>> AGE_SHIFT) & 0xFF;
+	}
+}
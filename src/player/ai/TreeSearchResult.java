@@ -0,0 +1,77 @@
+package player.ai;
+
+import board.Move;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a search depth, which contains the optimal move
+ * found by the search and the depth to which the search went.
+ */
+public class TreeSearchResult {
+	private final int depth;
+	private final Move move;
+	private final double score; // Of move for the player choosing it, or NaN if unknown.
+	private final boolean complete; // Did the search of depth finish?
+	private final List<RootMoveScore> rootScores; // Empty unless the search scored every root move.
+
+	public TreeSearchResult(final int d, final Move m) {
+		this(d, m, Double.NaN, true);
+	}
+
+	public TreeSearchResult(final int d, final Move m, final double s, final boolean c) {
+		this(d, m, s, c, Collections.emptyList());
+	}
+
+	public TreeSearchResult(final int d, final Move m, final double s, final boolean c,
+			final List<RootMoveScore> scores) {
+		depth = d;
+		move = m;
+		score = s;
+		complete = c;
+		rootScores = scores;
+	}
+
+	/**
+	 * Returns whichever of two results to play: the deeper one, counting a complete search of
+	 * a depth as deeper than an incomplete one, and the later one, latest, between equals,
+	 * since an incomplete search only publishes better moves. An incomplete result is deeper
+	 * than a complete one of the depth before, since its search started with that result's move.
+	 */
+	static TreeSearchResult deeper(TreeSearchResult deepest, TreeSearchResult latest) {
+		if (latest.getMove() == null) {
+			return deepest;
+		}
+		int deepestRank = 2*deepest.depth + (deepest.complete ? 1 : 0);
+		int latestRank = 2*latest.depth + (latest.complete ? 1 : 0);
+		if (latestRank > deepestRank || (latestRank == deepestRank && !latest.complete)) {
+			return latest;
+		}
+		return deepest;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public Move getMove() {
+		return move;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Returns the score of each root move searched, for a root-parallel search (see
+	 * TreeSearcher.setRootPool), in the order they were searched.
+	 */
+	public List<RootMoveScore> getRootScores() {
+		return rootScores;
+	}
+}
@@ -4,22 +4,130 @@ import board.Move;
 import board.OthelloBitBoard;
 import board.TileState;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class TreeSearcher implements Callable<TreeSearchResult> {
 	private final int depthGoal; //How deep this searcher wants to search
-	private final OthelloBitBoard board; //The game state represented by the root of the tree
-	private final TileState rootPlayerColor; //Color of the player selecting a move
+	private final TDMCNode root; //The game state the player selecting a move is in
+	private final TranspositionTable table; //Results shared with the other searchers of this player
+	private final int rootOrderOffset; //Index of the root move to search first
+	private final ForkJoinPool splitPool; //Pool the search is split over, or null to search sequentially
+	private final SearchAlgorithm algorithm;
+	private volatile boolean aborted = false; //Has this search been interrupted?
+	private final LongAdder nodes = new LongAdder(); //Nodes searched, counted from every thread of a split search
+	private TDMCNode bestRootChild; //The best root move of the last completed search of the whole root
+	private ProbCut probCut; //The parameters of selective search, or null to search every node fully
+	private LateMoveReductions reductions; //How to reduce the later moves of each node, or null to search them fully
+	private ForkJoinPool rootPool; //Pool the root moves are searched in parallel on, or null to search them one by one
+	private SearchCancellation cancellation; //Stops the search once cancelled, besides an interrupt, or null
+	private Consumer<TreeSearchResult> progress; //Told of every better root move found, and of the final result, or null
+	private Move firstRootMove; //The root move to search first, such as the best of the previous depth, or null
+	private double bestRootScore = Double.NaN; //The score of the best root move found so far by findBestMove or PVS
+	/*
+	    Move ordering state, learnt from the cutoffs of this search: the last two moves that
+	    caused a cutoff at each remaining depth (killer moves, as sibling positions tend to be
+	    refuted by the same move), and for each tile, how much search its cutoffs have saved.
+	    The history is halved at the start of each search of the root, so that the cutoffs of
+	    the latest searches count most, and whenever a counter passes HISTORY_LIMIT, so that
+	    none overflows. The threads of a split search update them without locking: a lost
+	    update only makes the order slightly worse.
+	 */
+	private final int[][] killers;
+	private final int[] history = new int[64];
+	private static final int HISTORY_LIMIT = 1 << 24;
+	/*
+	    Nodes at least this deep are split over splitPool; shallower trees are too small to be worth a task.
+	 */
+	private static final int MIN_SPLIT_DEPTH = 4;
+	/*
+	    Half the width of the first PVS aspiration window, on the scale of TDMCNode.eval(): the
+	    same step MTD(f) takes. It is doubled every time the score falls outside the window.
+	 */
+	private static final double ASPIRATION_WINDOW = 1.0;
+	/*
+	    How good each tile usually is to play, to order the moves that neither the table nor
+	    the cutoffs say anything about: corners first, edges next, and the X and C squares
+	    next to an empty corner last. Each move the opponent gets after the move costs MOBILITY_ORDER.
+	 */
+	private static final int[] SQUARE_ORDER = new int[] {
+			64, -16,  8,  4,  4,  8, -16, 64,
+			-16, -64, -4, -2, -2, -4, -64, -16,
+			8,  -4,   2,  1,  1,  2,  -4,  8,
+			4,  -2,   1,  0,  0,  1,  -2,  4,
+			4,  -2,   1,  0,  0,  1,  -2,  4,
+			8,  -4,   2,  1,  1,  2,  -4,  8,
+			-16, -64, -4, -2, -2, -4, -64, -16,
+			64, -16,  8,  4,  4,  8, -16, 64
+	};
+	private static final int MOBILITY_ORDER = 8;
+	private static final long HASH_MOVE_ORDER = Long.MAX_VALUE, KILLER_ORDER = Long.MAX_VALUE / 4;
+
+	public TreeSearcher(OthelloBitBoard board, TileState playerColor, int depth, TranspositionTable table) {
+		this(board, playerColor, depth, table, 0);
+	}
+
+	/**
+	 * Creates a searcher that goes through the root moves starting at the one with index
+	 * rootOrderOffset, so that searchers sharing a table don't all begin with the same move.
+	 */
+	public TreeSearcher(OthelloBitBoard board, TileState playerColor, int depth, TranspositionTable table,
+			int rootOrderOffset) {
+		this(board, playerColor, depth, table, rootOrderOffset, null);
+	}
+
+	/**
+	 * Creates a searcher that splits the work of the search over splitPool with Young
+	 * Brothers Wait: at each node, the first child is searched alone to get a bound, and
+	 * then the remaining children are searched in parallel as tasks that idle threads of
+	 * the pool can steal. If one of them causes a cutoff, the rest are stopped.
+	 */
+	public TreeSearcher(OthelloBitBoard board, TileState playerColor, int depth, TranspositionTable table,
+			int rootOrderOffset, ForkJoinPool splitPool) {
+		this(new TDMCNode(board, playerColor), depth, table, rootOrderOffset, splitPool);
+	}
+
+	/**
+	 * Creates a searcher for a node that may already have been expanded, such as the root of
+	 * a SearchTree shared with other searchers, so that its existing children are reused.
+	 */
+	public TreeSearcher(TDMCNode root, int depth, TranspositionTable table) {
+		this(root, depth, table, 0, null);
+	}
 
-	public TreeSearcher(OthelloBitBoard board, TileState playerColor, int depth) {
+	public TreeSearcher(TDMCNode root, int depth, TranspositionTable table, int rootOrderOffset,
+			ForkJoinPool splitPool) {
+		this(root, depth, table, rootOrderOffset, splitPool, SearchAlgorithm.MTDF);
+	}
+
+	public TreeSearcher(TDMCNode root, int depth, TranspositionTable table, int rootOrderOffset,
+			ForkJoinPool splitPool, SearchAlgorithm algorithm) {
 		this.depthGoal = depth;
-		this.board = board;
-		this.rootPlayerColor = playerColor;
+		this.root = root;
+		this.table = table;
+		this.rootOrderOffset = rootOrderOffset;
+		this.splitPool = splitPool;
+		this.algorithm = algorithm;
+		this.killers = new int[depth + 2][2]; // The root is searched to depth + 1 by PVS.
+		for (int[] killersAtDepth : killers) {
+			Arrays.fill(killersAtDepth, TranspositionTable.NO_MOVE);
+		}
 	}
 
 	/**
-	 * Implementation of NegaMax with Alpha-Beta pruning.
+	 * Implementation of NegaMax with Alpha-Beta pruning, using the transposition
+	 * table both to skip positions that have already been searched deeply enough and
+	 * to search the best move found for a position before its other moves.
 	 * 
 	 * @param node
 	 *            The State we are currently parsing.
@@ -29,87 +137,649 @@ public class TreeSearcher implements Callable<TreeSearchResult> {
 	 *            The beta bound for alpha-beta pruning.
 	 * @param depth
 	 *            The current depth we are at.
-	 * @param playerColor
-	 *            The player making a move.
-	 * @return The best point count we can get on this branch of the state space
-	 *         to the specified depth.
+	 * @param split
+	 *            The innermost split point above node, or null if the search hasn't been split.
+	 * @return The best point count the player to move at node can get on this
+	 *         branch of the state space to the specified depth.
 	 */
-	private double AlphaBetaWithMemory(TDMCNode node, double alpha, double beta,
-			int depth, TileState playerColor) {
-		if (Thread.interrupted()) {
-            return 0;
+	private double AlphaBetaWithMemory(TDMCNode node, double alpha, double beta, int depth, SplitPoint split) {
+		if (stopped(split)) {
+            return 0; /* Results are no longer relevant. */
         }
+		nodes.increment();
 		if (depth == 0 || node.isTerminal()) {
-			if (playerColor == rootPlayerColor) {
-				return node.eval();
-			} else {
-				return -node.eval();
+			return node.eval();
+		}
+
+		final long key = node.getBoard().getZobristKey(node.getCurrentPlayerColor());
+		final long entry = table.probe(key);
+		int hashMove = TranspositionTable.NO_MOVE;
+		if (entry != 0L) {
+			hashMove = TranspositionTable.moveOf(entry);
+			// The root is always searched, so that bestRootChild is set; its entry only orders its moves.
+			if (node != root && TranspositionTable.depthOf(entry) >= depth) {
+				double score = table.scoreOf(key, entry); // NaN if just replaced, which fails every test below.
+				switch (TranspositionTable.boundOf(entry)) {
+				case TranspositionTable.EXACT:
+					if (!Double.isNaN(score)) {
+						return score;
+					}
+					break;
+				case TranspositionTable.LOWER_BOUND:
+					if (score >= beta) {
+						return score;
+					}
+					break;
+				case TranspositionTable.UPPER_BOUND:
+					if (score <= alpha) {
+						return score;
+					}
+					break;
+				}
+			}
+		}
+
+		if (probCut != null && node != root && depth >= ProbCut.MIN_DEPTH) {
+			ProbCut.Cut cut = probCut.getCut(node.getStage(), depth);
+			if (cut != null) {
+				double prediction = tryProbCut(node, cut, alpha, beta, split);
+				if (stopped(split)) {
+					return 0;
+				}
+				if (!Double.isNaN(prediction)) {
+					return prediction;
+				}
+				hashMove = TranspositionTable.moveOf(table.probe(key)); // The shallow search has found a good move to try first.
 			}
 		}
 
+		TDMCNode[] children = orderChildren(node, hashMove, depth);
+		final double originalAlpha = alpha;
 		double bestValue = Double.NEGATIVE_INFINITY;
+		TDMCNode bestChild = null;
+		for (int i = 0; i < children.length; i++) {
+			TDMCNode child = children[i];
+			double newValue = i == 0 ? searchChild(node, child, alpha, beta, depth - 1, split)
+					: searchLaterChild(node, child, i, alpha, beta, depth - 1, split);
+			if (stopped(split)) {
+                return 0; /* Results are no longer relevant. */
+            }
+			if (node == root) {
+				publishProvenRootMove(child, i, newValue, alpha);
+			}
+			if (newValue > bestValue) {
+                bestValue = newValue;
+                bestChild = child;
+            }
+			if (bestValue > alpha) {
+                alpha = bestValue;
+            }
+			if (bestValue >= beta) {
+				break;
+			}
+			if (splitPool != null && depth >= MIN_SPLIT_DEPTH) {
+				// Young Brothers Wait: the eldest brother has set a bound, search the rest in parallel.
+				BrotherTask bestBrother = searchYoungerBrothers(node, children, i + 1, alpha, beta, depth - 1, split);
+				if (stopped(split)) {
+					return 0;
+				}
+				if (bestBrother != null && node == root) {
+					publishProvenRootMove(bestBrother.child, bestBrother.index, bestBrother.value, alpha);
+				}
+				if (bestBrother != null && bestBrother.value > bestValue) {
+					bestValue = bestBrother.value;
+					bestChild = bestBrother.child;
+				}
+				break;
+			}
+		}
+		if (bestValue >= beta) {
+			recordCutoff(bestChild, depth);
+		}
 
-		// Partial move ordering. Check value up to depth D-3 and order by that
-		int[] depthsToSearch;
-		if (depth > 4) {
-			depthsToSearch = new int[2];
-			depthsToSearch[0] = depth - 2;
-			depthsToSearch[1] = depth;
-		} else {
-			depthsToSearch = new int[1];
-			depthsToSearch[0] = depth;
+		int bound = bestValue <= originalAlpha ? TranspositionTable.UPPER_BOUND
+				: bestValue >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+		table.store(key, depth, bound, bestValue, tileOf(bestChild));
+		if (node == root) {
+			bestRootChild = bestChild;
+		}
+		return bestValue;
+	}
+
+	/**
+	 * Searches child and returns its value for the player to move at node.
+	 */
+	private double searchChild(TDMCNode node, TDMCNode child, double alpha, double beta, int depth, SplitPoint split) {
+		if (child.getCurrentPlayerColor() == node.getCurrentPlayerColor()) { // The opponent has to pass.
+			return AlphaBetaWithMemory(child, alpha, beta, depth, split);
 		}
+		return -AlphaBetaWithMemory(child, -beta, -alpha, depth, split);
+	}
+
+	/**
+	 * Multi-ProbCut: searches node to the shallow depth of cut, with null windows around the
+	 * values predicted to put the deep search beyond beta or alpha. Returns beta (or alpha) if
+	 * the deep search would fail high (or low) with the confidence probCut asks for, and NaN
+	 * if it has to be done.
+	 */
+	private double tryProbCut(TDMCNode node, ProbCut.Cut cut, double alpha, double beta, SplitPoint split) {
+		final double threshold = probCut.getThreshold();
+		if (beta != Double.POSITIVE_INFINITY) {
+			double bound = cut.highBound(beta, threshold);
+			if (AlphaBetaWithMemory(node, Math.nextDown(bound), bound, cut.shallowDepth, split) >= bound) {
+				return beta;
+			}
+		}
+		if (alpha != Double.NEGATIVE_INFINITY && !stopped(split)) {
+			double bound = cut.lowBound(alpha, threshold);
+			if (AlphaBetaWithMemory(node, bound, Math.nextUp(bound), cut.shallowDepth, split) <= bound) {
+				return alpha;
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Searches the child of node with index index in the search order, once the first has set
+	 * alpha. With PVS, the child is expected to be worse, which a null window around alpha
+	 * proves cheaply; only if it turns out better is it searched again with the whole window.
+	 * A late child may first be searched to a reduced depth, which has to prove the same.
+	 */
+	private double searchLaterChild(TDMCNode node, TDMCNode child, int index, double alpha, double beta,
+			int depth, SplitPoint split) {
+		if (isReducible(node, child, index, depth)) {
+			double value = searchChild(node, child, alpha, Math.nextUp(alpha), depth - reductions.getReduction(), split);
+			if (value <= alpha || stopped(split)) {
+				return value;
+			}
+		}
+		if (algorithm != SearchAlgorithm.PVS) {
+			return searchChild(node, child, alpha, beta, depth, split);
+		}
+		double value = searchChild(node, child, alpha, Math.nextUp(alpha), depth, split);
+		if (value > alpha && value < beta && !stopped(split)) {
+			value = searchChild(node, child, alpha, beta, depth, split);
+		}
+		return value;
+	}
 
+	/**
+	 * Can the child of node with index index in the search order, to be searched to depth, be
+	 * searched to a reduced depth first? Not if it's among the first moves, if too little depth
+	 * is left, if it's played next to a corner or if the game is in its endgame.
+	 */
+	private boolean isReducible(TDMCNode node, TDMCNode child, int index, int depth) {
+		if (reductions == null || index < reductions.getFullDepthMoves() || depth + 1 < reductions.getMinDepth()) {
+			return false;
+		}
+		final int size = node.getBoard().getBoardSize();
+		Move m = child.getMove();
+		boolean nearCorner = (m.row() <= 1 || m.row() >= size - 2) && (m.col() <= 1 || m.col() >= size - 2);
+		return !nearCorner && node.getBoard().getScoreOf(TileState.EMPTY) > reductions.getMinEmpties()
+				&& node.getStage() != Stage.END;
+	}
+
+	/**
+	 * Searches the children of node from index from on in parallel, all with the window alpha, beta. Returns the
+	 * task of the best child searched, or null if there were none. Once a child fails
+	 * high the others are not needed any more, so its task cuts the split point off, which
+	 * stops the brothers still running.
+	 */
+	private BrotherTask searchYoungerBrothers(TDMCNode node, TDMCNode[] children, int from,
+			double alpha, double beta, int depth, SplitPoint parentSplit) {
+		SplitPoint split = new SplitPoint(parentSplit);
+		List<BrotherTask> brothers = new ArrayList<>(children.length - from);
+		for (int i = from; i < children.length; i++) {
+			brothers.add(new BrotherTask(node, children[i], i, alpha, beta, depth, split));
+		}
+		// Fork in reverse, so that this thread takes the first brother back when it joins it:
+		for (int i = brothers.size() - 1; i >= 0; i--) {
+			brothers.get(i).fork();
+		}
+		BrotherTask bestBrother = null;
+		for (BrotherTask brother : brothers) {
+			brother.join();
+			if (!brother.complete) {
+				continue; // Stopped by a brother's cutoff, so its value isn't real.
+			}
+			if (bestBrother == null || brother.value > bestBrother.value) {
+				bestBrother = brother;
+			}
+			if (brother.value >= beta) {
+				split.cutOff = true;
+				break;
+			}
+		}
+		return bestBrother;
+	}
+
+	/**
+	 * Runs AlphaBetaWithMemory on root, as a task in splitPool if the search is split.
+	 */
+	private double searchRoot(TDMCNode root, double alpha, double beta, int depth) {
+		ageHistory();
+		if (splitPool == null) {
+			return AlphaBetaWithMemory(root, alpha, beta, depth, null);
+		}
+		ForkJoinTask<Double> task = splitPool.submit(() -> AlphaBetaWithMemory(root, alpha, beta, depth, null));
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			// Stop the tasks in the pool too, and leave the interrupt for the caller to see.
+			aborted = true;
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Split search failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Has this search, or the split point the current node is searched under, been stopped?
+	 */
+	private boolean stopped(SplitPoint split) {
+		return outOfTime() || (split != null && split.isCutOff());
+	}
+
+	/**
+	 * Returns the children of node in the order to search them: the best move stored in the
+	 * table first, then the killer moves of this depth, then the rest by history, ties being
+	 * broken by where the move is played and how few moves it leaves the opponent. The root
+	 * moves are first rotated by rootOrderOffset, so that searchers sharing a table break ties
+	 * differently, and firstRootMove, if set, takes the place of the table's move at the root.
+	 */
+	private TDMCNode[] orderChildren(TDMCNode node, int hashMove, int depth) {
 		List<TDMCNode> children = node.getChildren();
-		// Do shorter depth search first to order moves on the longer search
-		for (int depthToSearch : depthsToSearch) {
-			for (TDMCNode child : children) {
-				if (Thread.interrupted()) {
-                    return 0; /* Results are no longer relevant. */
-                }
-				double newValue;
-				newValue = -AlphaBetaWithMemory(child, -beta, -alpha, depthToSearch - 1, child.getCurrentPlayerColor());
-				if (newValue > bestValue) {
-                    bestValue = newValue;
-                }
-				if (bestValue > alpha) {
-                    alpha = bestValue;
-                }
-				if (bestValue >= beta) {
+		final int size = children.size();
+		final int offset = node == root ? rootOrderOffset : 0;
+		if (node == root && firstRootMove != null) {
+			hashMove = firstRootMove.row()*root.getBoard().getBoardSize() + firstRootMove.col();
+		}
+		TDMCNode[] ordered = new TDMCNode[size];
+		long[] order = new long[size];
+		for (int i = 0; i < size; i++) {
+			TDMCNode child = children.get((i + offset) % size);
+			long childOrder = moveOrder(node, child, hashMove, depth);
+			// Insertion sort, stable, which is fastest for the few moves of a position:
+			int j = i;
+			for (; j > 0 && order[j - 1] < childOrder; j--) {
+				ordered[j] = ordered[j - 1];
+				order[j] = order[j - 1];
+			}
+			ordered[j] = child;
+			order[j] = childOrder;
+		}
+		return ordered;
+	}
+
+	/**
+	 * Returns how early to search child among the children of node: the higher, the earlier.
+	 */
+	private long moveOrder(TDMCNode node, TDMCNode child, int hashMove, int depth) {
+		final int tile = tileOf(child);
+		if (tile == hashMove) {
+			return HASH_MOVE_ORDER;
+		} else if (tile == killers[depth][0]) {
+			return KILLER_ORDER;
+		} else if (tile == killers[depth][1]) {
+			return KILLER_ORDER - 1;
+		}
+		int opponentMoves = 0;
+		if (child.getCurrentPlayerColor() != node.getCurrentPlayerColor()) {
+			opponentMoves = Long.bitCount(((OthelloBitBoard)child.getBoard())
+					.getValidMovesAsBits(child.getCurrentPlayerColor()));
+		}
+		return ((long)history[tile] << 16) + SQUARE_ORDER[tile] - MOBILITY_ORDER*opponentMoves;
+	}
+
+	/**
+	 * Remembers that playing child caused a cutoff with depth left to search.
+	 */
+	private void recordCutoff(TDMCNode child, int depth) {
+		final int tile = tileOf(child);
+		int[] killersAtDepth = killers[depth];
+		if (killersAtDepth[0] != tile) {
+			killersAtDepth[1] = killersAtDepth[0];
+			killersAtDepth[0] = tile;
+		}
+		history[tile] += depth*depth;
+		if (history[tile] > HISTORY_LIMIT) {
+			ageHistory();
+		}
+	}
+
+	/**
+	 * Halves every history counter, so that older cutoffs count for less than newer ones.
+	 */
+	private void ageHistory() {
+		for (int tile = 0; tile < history.length; tile++) {
+			history[tile] >>= 1;
+		}
+	}
+
+	private int tileOf(TDMCNode child) {
+		if (child == null) {
+			return TranspositionTable.NO_MOVE;
+		}
+		Move m = child.getMove();
+		return m.row()*root.getBoard().getBoardSize() + m.col();
+	}
+
+	/**
+	 * Has the thread running this search been interrupted, or the search cancelled? Once it has, the search stays
+	 * aborted, and nothing more is stored in the shared table, since the values being
+	 * returned are no longer real scores.
+	 */
+	private boolean outOfTime() {
+		if (!aborted && (Thread.currentThread().isInterrupted() || (cancellation != null && cancellation.isCancelled()))) {
+			aborted = true;
+		}
+		return aborted;
+	}
+
+	/**
+	 * Was this search interrupted or cancelled before it finished? If so, the move it
+	 * returned is only the best among the root moves it got through.
+	 */
+	public boolean wasAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Returns the number of nodes this search has visited so far, for comparing algorithms.
+	 */
+	public long getNodes() {
+		return nodes.sum();
+	}
+
+	/**
+	 * Makes this search selective, pruning with Multi-ProbCut with the given parameters (or not at all if null).
+	 */
+	public void setProbCut(ProbCut probCut) {
+		this.probCut = probCut;
+	}
+
+	/**
+	 * Reduces the depth late moves are first searched to with the given parameters (or not at all if null).
+	 */
+	public void setLateMoveReductions(LateMoveReductions reductions) {
+		this.reductions = reductions;
+	}
+
+	/**
+	 * Makes this search evaluate the root moves concurrently on rootPool (or one by one if
+	 * null), and score each of them (see findBestMoveInParallel).
+	 */
+	public void setRootPool(ForkJoinPool rootPool) {
+		this.rootPool = rootPool;
+	}
+
+	/**
+	 * Makes this search stop once cancellation is cancelled, as well as when its thread is interrupted.
+	 */
+	public void setCancellation(SearchCancellation cancellation) {
+		this.cancellation = cancellation;
+	}
+
+	/**
+	 * Makes this search publish its progress to progress: an incomplete result each time it
+	 * proves a root move better than those before it, and the complete result once it has
+	 * finished. Each result has the best move so far and its score for the player to move at
+	 * the root, which for an incomplete result may only be a lower bound. Progress
+	 * may be published from the threads of a split or root-parallel search.
+	 */
+	public void setProgressListener(Consumer<TreeSearchResult> progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Makes this search begin with root move move, normally the best move of a shallower
+	 * search. Once it has been searched, every better move found is better at this depth
+	 * too, so the incomplete results published are worth more than the shallower search's.
+	 */
+	public void setFirstRootMove(Move move) {
+		this.firstRootMove = move;
+	}
+
+	/**
+	 * Publishes child, the root move with index index in the search order, if its value proves
+	 * it better than the moves searched before it, which set alpha: only a value above alpha
+	 * is exact or a lower bound. One at most alpha is an upper bound, which proves nothing
+	 * even if it is higher than the bounds before it, as in a null-window or failed-low
+	 * search. The first move is only published if no move was set to be searched first.
+	 */
+	private void publishProvenRootMove(TDMCNode child, int index, double value, double alpha) {
+		if (value > alpha && (index > 0 || firstRootMove == null)) {
+			publishRootMove(child, value);
+		}
+	}
+
+	/**
+	 * Publishes child as the best root move found so far, with score, unless the search has
+	 * stopped, in which case score is not a real score.
+	 */
+	private void publishRootMove(TDMCNode child, double score) {
+		if (progress != null && !outOfTime()) {
+			progress.accept(new TreeSearchResult(depthGoal, child.getMove(), score, false));
+		}
+	}
+
+	/**
+	 * Returns the value of the root for the player to move there, searched to depthGoal with a full window.
+	 */
+	double score() {
+		return searchRoot(root, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, depthGoal);
+	}
+
+	/**
+	 * Searches root to depthGoal, and returns the best move found with its score. If the
+	 * search is stopped before it finishes, the result is marked incomplete, and has the
+	 * best move among those fully searched.
+	 */
+	@Override
+	public TreeSearchResult call() {
+		TreeSearchResult result;
+		if (algorithm == SearchAlgorithm.MTDF_INTEGER) {
+			Move move = integerMTDF(root);
+			result = new TreeSearchResult(depthGoal, move, bestRootScore, !aborted);
+		} else if (rootPool != null) {
+			result = findBestMoveInParallel(root);
+		} else {
+			Move move = algorithm == SearchAlgorithm.PVS ? principalVariationSearch(root) : findBestMove(root);
+			result = new TreeSearchResult(depthGoal, move, bestRootScore, !aborted);
+		}
+		if (progress != null && result.isComplete() && result.getMove() != null) {
+			progress.accept(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the best move of root with MTD(f) on integer scores: null-window searches of the
+	 * root itself (so its children to depthGoal, as findBestMove does), starting from the
+	 * score of the previous iteration kept in the table. On integers, each search moves a
+	 * bound past the score it returns, so the bounds meet after a few passes. If stopped,
+	 * returns the best move of the last pass searched to the end.
+	 */
+	private Move integerMTDF(TDMCNode root) {
+		final long key = root.getBoard().getZobristKey(root.getCurrentPlayerColor());
+		final long entry = table.probe(key);
+		final double stored = entry != 0L ? table.scoreOf(key, entry) : Double.NaN;
+		int g = Double.isNaN(stored) ? root.evalScore() : (int)stored;
+		int lowerBound = Score.MIN, upperBound = Score.MAX;
+		Move bestMove = null;
+		while (lowerBound < upperBound) {
+			final int beta = g == lowerBound ? g + 1 : g;
+			ageHistory();
+			g = integerAlphaBeta(root, beta - 1, beta, depthGoal + 1);
+			if (outOfTime()) {
+				return bestMove;
+			}
+			if (bestRootChild != null) {
+				bestMove = bestRootChild.getMove();
+			}
+			bestRootScore = g;
+			if (g < beta) {
+				upperBound = g;
+			} else {
+				lowerBound = g;
+			}
+		}
+		return bestMove;
+	}
+
+	/**
+	 * AlphaBetaWithMemory on integer scores (see Score), with the same table and move order,
+	 * searched sequentially. Scores are stored in the table exactly, since they fit in a short.
+	 */
+	private int integerAlphaBeta(TDMCNode node, int alpha, int beta, int depth) {
+		if (outOfTime()) {
+			return 0; /* Results are no longer relevant. */
+		}
+		nodes.increment();
+		if (depth == 0 || node.isTerminal()) {
+			return node.evalScore();
+		}
+
+		final long key = node.getBoard().getZobristKey(node.getCurrentPlayerColor());
+		final long entry = table.probe(key);
+		int hashMove = TranspositionTable.NO_MOVE;
+		if (entry != 0L) {
+			hashMove = TranspositionTable.moveOf(entry);
+			// As in AlphaBetaWithMemory, the root is always searched, so that bestRootChild is set.
+			if (node != root && TranspositionTable.depthOf(entry) >= depth) {
+				double score = table.scoreOf(key, entry); // NaN if just replaced, which fails every test below.
+				switch (TranspositionTable.boundOf(entry)) {
+				case TranspositionTable.EXACT:
+					if (!Double.isNaN(score)) {
+						return (int)score;
+					}
+					break;
+				case TranspositionTable.LOWER_BOUND:
+					if (score >= beta) {
+						return (int)score;
+					}
+					break;
+				case TranspositionTable.UPPER_BOUND:
+					if (score <= alpha) {
+						return (int)score;
+					}
 					break;
 				}
 			}
 		}
+
+		TDMCNode[] children = orderChildren(node, hashMove, depth);
+		final int originalAlpha = alpha;
+		int bestValue = Score.MIN - 1;
+		TDMCNode bestChild = null;
+		for (int i = 0; i < children.length; i++) {
+			TDMCNode child = children[i];
+			int newValue = child.getCurrentPlayerColor() == node.getCurrentPlayerColor() // The opponent has to pass.
+					? integerAlphaBeta(child, alpha, beta, depth - 1)
+					: -integerAlphaBeta(child, -beta, -alpha, depth - 1);
+			if (outOfTime()) {
+				return 0; /* Results are no longer relevant. */
+			}
+			if (node == root) {
+				publishProvenRootMove(child, i, newValue, alpha);
+			}
+			if (newValue > bestValue) {
+				bestValue = newValue;
+				bestChild = child;
+			}
+			if (bestValue > alpha) {
+				alpha = bestValue;
+			}
+			if (bestValue >= beta) {
+				recordCutoff(bestChild, depth);
+				break;
+			}
+		}
+
+		int bound = bestValue <= originalAlpha ? TranspositionTable.UPPER_BOUND
+				: bestValue >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+		table.store(key, depth, bound, bestValue, tileOf(bestChild));
+		if (node == root) {
+			bestRootChild = bestChild;
+		}
 		return bestValue;
 	}
 
-	@Override
-	public TreeSearchResult call() {
-		return new TreeSearchResult(depthGoal, findBestMove(board, rootPlayerColor));
+	/**
+	 * Finds the best move of root with Principal Variation Search, searching the root itself
+	 * (so its children to depthGoal, as findBestMove does) in an aspiration window around
+	 * the score of the previous iteration, kept in the table. A score outside the window is
+	 * only a bound, so the window is widened on that side and the root is searched again.
+	 * If stopped, returns the best move of the last window searched to the end.
+	 */
+	private Move principalVariationSearch(TDMCNode root) {
+		final long key = root.getBoard().getZobristKey(root.getCurrentPlayerColor());
+		final long entry = table.probe(key);
+		double guess = entry != 0L ? table.scoreOf(key, entry) : Double.NaN;
+		if (Double.isNaN(guess)) {
+			guess = root.eval();
+		}
+		double window = ASPIRATION_WINDOW;
+		double alpha = Double.isInfinite(guess) ? Double.NEGATIVE_INFINITY : guess - window;
+		double beta = Double.isInfinite(guess) ? Double.POSITIVE_INFINITY : guess + window;
+		Move bestMove = null;
+		while (true) {
+			double score = searchRoot(root, alpha, beta, depthGoal + 1);
+			if (outOfTime()) {
+				return bestMove; /* Out of time, return the best of the last window searched. */
+			}
+			bestMove = bestRootChild == null ? null : bestRootChild.getMove();
+			bestRootScore = score;
+			if (score <= alpha && alpha != Double.NEGATIVE_INFINITY) {
+				alpha = score - window;
+			} else if (score >= beta && beta != Double.POSITIVE_INFINITY) {
+				beta = score + window;
+			} else {
+				return bestMove;
+			}
+			window *= 2;
+		}
 	}
 
 	/**
 	 * Finds the optimal move among possible moves using the heuristic TDMCNode.eval(),
 	 * tree traversal is done with a specialized alpha-beta pruning minmax algorithm.
+	 * The root moves are searched one by one, starting with firstRootMove if it is set.
 	 */
-	private Move findBestMove(OthelloBitBoard state, TileState playerColor) {
-		TDMCNode root = new TDMCNode(state, playerColor);
-		List<TDMCNode> children = root.getChildren();
+	private Move findBestMove(TDMCNode root) {
+		List<TDMCNode> children = new ArrayList<>(root.getChildren());
+		Collections.rotate(children, -rootOrderOffset);
+		for (int i = 0; i < children.size(); i++) {
+			if (children.get(i).getMove().equals(firstRootMove)) {
+				children.add(0, children.remove(i));
+				break;
+			}
+		}
 		Move bestMove = null;
 		double bestScore = Double.NEGATIVE_INFINITY;
 
-		for (TDMCNode child : children) {
-			if (Thread.interrupted()) {
+		for (int i = 0; i < children.size(); i++) {
+			TDMCNode child = children.get(i);
+			if (outOfTime()) {
                 return bestMove; /* Out of time, return the best found so far. */
             }
 			double score;
 			//score = idiotsAlphaBeta(child, depthGoal, bestScore, Double.POSITIVE_INFINITY);
 			//score = naiveMinMax(child, depthGoal);
-			score = MTDF(child, child.eval(), depthGoal, rootPlayerColor);
+			score = MTDF(child, child.eval(), depthGoal);
+			if (outOfTime()) {
+				return bestMove; /* The search of this child was cut short, so score isn't real. */
+			}
+			if (child.getCurrentPlayerColor() != root.getCurrentPlayerColor()) {
+				score = -score; // MTDF scores the child for the player to move there.
+			}
 			//System.out.println(score);
 			if (bestMove == null || score > bestScore) {
+				publishProvenRootMove(child, i, score, bestScore);
 				bestScore = score;
 				bestMove = child.getMove();
+				bestRootScore = score;
 				//System.out.println("Move: " + bestMove + ", Score: " + bestScore);
 			} /*else if (Math.abs(bestScore - score) < 0.0001 && random.nextDouble() > 0.5){ //approximately the same: randomly choose one
 				bestScore = score;
@@ -122,6 +792,78 @@ public class TreeSearcher implements Callable<TreeSearchResult> {
 		return bestMove;
 	}
 
+	/**
+	 * Finds the best move of root by searching its children concurrently on rootPool. The
+	 * first child in move order is searched alone, to set alpha; the others are then
+	 * searched in parallel, and each first tests with a null window whether it beats the
+	 * best score found so far, which tightens as they finish. Only the children that do are
+	 * searched for their exact score. The result has a score for every root move: exact
+	 * for those searched fully, and an upper bound for the others.
+	 */
+	private TreeSearchResult findBestMoveInParallel(TDMCNode root) {
+		final long entry = table.probe(root.getBoard().getZobristKey(root.getCurrentPlayerColor()));
+		final int hashMove = entry != 0L ? TranspositionTable.moveOf(entry) : TranspositionTable.NO_MOVE;
+		TDMCNode[] children = orderChildren(root, hashMove, depthGoal + 1);
+		DoubleAccumulator alpha = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+		List<RootTask> tasks = new ArrayList<>(children.length);
+		for (TDMCNode child : children) {
+			tasks.add(new RootTask(root, child, alpha));
+		}
+		ForkJoinTask<?> search = rootPool.submit(() -> {
+			tasks.get(0).invoke();
+			ForkJoinTask.invokeAll(tasks.subList(1, tasks.size()));
+		});
+		try {
+			search.get();
+		} catch (InterruptedException e) {
+			// Stop the tasks in the pool too, and leave the interrupt for the caller to see.
+			aborted = true;
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Root-parallel search failed", e.getCause());
+		}
+
+		Move bestMove = null;
+		double bestScore = Double.NaN;
+		List<RootMoveScore> scores = new ArrayList<>(children.length);
+		for (RootTask task : tasks) {
+			if (!task.isDone() || task.score == null) {
+				continue; // Not searched before the search was aborted.
+			}
+			scores.add(task.score);
+			if (task.score.isExact() && (bestMove == null || task.score.getScore() > bestScore)) {
+				bestScore = task.score.getScore();
+				bestMove = task.score.getMove();
+			}
+		}
+		return new TreeSearchResult(depthGoal, bestMove, bestScore, !aborted, scores);
+	}
+
+	/**
+	 * Returns the score of child for the player to move at root, searched to depthGoal:
+	 * exact if it beats alpha, otherwise an upper bound at most alpha.
+	 */
+	private RootMoveScore scoreRootMove(TDMCNode root, TDMCNode child, double alpha) {
+		double guess = child.eval();
+		if (alpha != Double.NEGATIVE_INFINITY) {
+			double bound = searchChild(root, child, alpha, Math.nextUp(alpha), depthGoal, null);
+			if (bound <= alpha || outOfTime()) {
+				return new RootMoveScore(child.getMove(), bound, false);
+			}
+			guess = child.getCurrentPlayerColor() != root.getCurrentPlayerColor() ? -bound : bound;
+		}
+		double score;
+		if (algorithm == SearchAlgorithm.PVS) {
+			score = searchChild(root, child, alpha, Double.POSITIVE_INFINITY, depthGoal, null);
+		} else {
+			score = MTDF(child, guess, depthGoal);
+			if (child.getCurrentPlayerColor() != root.getCurrentPlayerColor()) {
+				score = -score; // MTDF scores the child for the player to move there.
+			}
+		}
+		return new RootMoveScore(child.getMove(), score, true);
+	}
+
 	private double idiotsAlphaBeta(final TDMCNode node, final int depth, double lowerBound, double upperBound) {
 		// Leaf node, evaluate and return score relative to this' player
 		if (Thread.interrupted()) {
@@ -133,7 +875,7 @@ public class TreeSearcher implements Callable<TreeSearchResult> {
 		}
 		List<TDMCNode> children = node.getChildren();
 		TileState nextTurnPlayerColor = children.get(0).getCurrentPlayerColor();
-		if (nextTurnPlayerColor == rootPlayerColor) { // Maximizing
+		if (nextTurnPlayerColor == root.getCurrentPlayerColor()) { // Maximizing
 			double max = lowerBound;
 			for (TDMCNode child : children) {
 				if (Thread.interrupted()) {
@@ -166,13 +908,17 @@ public class TreeSearcher implements Callable<TreeSearchResult> {
 		}
 	}
 
-	private double MTDF(TDMCNode root, double firstGuess, int depth, TileState playerColor) {
+	/**
+	 * Finds the value of root for the player to move there with a series of null-window
+	 * searches, starting from the guess firstGuess.
+	 */
+	private double MTDF(TDMCNode root, double firstGuess, int depth) {
 		double g = firstGuess;
 		double beta;
 		double upperbound = Double.POSITIVE_INFINITY;
 		double lowerbound = Double.NEGATIVE_INFINITY;
 		while (lowerbound < upperbound) {
-			if (Thread.interrupted()) {
+			if (outOfTime()) {
                 return 0;
             }
 			if (g == lowerbound) {
@@ -181,7 +927,10 @@ public class TreeSearcher implements Callable<TreeSearchResult> {
 				beta = g;
 			}
 			// Traditional NegaMax call, just with different bounds
-			g = -AlphaBetaWithMemory(root, beta - 1, beta, depth, playerColor);
+			g = searchRoot(root, beta - 1, beta, depth);
+			if (Double.isInfinite(g)) {
+				return g; // A won or lost game is an exact score whatever the window.
+			}
 			if (g < beta) {
 				upperbound = g;
 			} else {
@@ -190,26 +939,97 @@ public class TreeSearcher implements Callable<TreeSearchResult> {
 		}
 		return g;
 	}
-}
 
-/**
- * The result of a search depth, which contains the optimal move
- * found by the search and the depth to which the search went.
- */
-class TreeSearchResult {
-	private final int depth;
-	private final Move move;
+	/**
+	 * A node whose children are being searched in parallel. Once one child fails high,
+	 * the node is cut off, which stops the searches of its other children and of any
+	 * split points below them.
+	 */
+	private static final class SplitPoint {
+		private final SplitPoint parent;
+		private volatile boolean cutOff = false;
 
-	public TreeSearchResult(final int d, final Move m) {
-		depth = d;
-		move = m;		
+		private SplitPoint(SplitPoint parent) {
+			this.parent = parent;
+		}
+
+		private boolean isCutOff() {
+			for (SplitPoint split = this; split != null; split = split.parent) {
+				if (split.cutOff) {
+					return true;
+				}
+			}
+			return false;
+		}
 	}
 
-	public int getDepth() {
-		return depth;
+	/**
+	 * The search of one root move in a root-parallel search, which raises the shared alpha
+	 * once the move has been scored.
+	 */
+	@SuppressWarnings("serial")
+	private final class RootTask extends RecursiveTask<RootMoveScore> {
+		private final TDMCNode root, child;
+		private final DoubleAccumulator alpha;
+		private RootMoveScore score; // Null until searched, or if the search was stopped.
+
+		private RootTask(TDMCNode root, TDMCNode child, DoubleAccumulator alpha) {
+			this.root = root;
+			this.child = child;
+			this.alpha = alpha;
+		}
+
+		@Override
+		protected RootMoveScore compute() {
+			RootMoveScore result = scoreRootMove(root, child, alpha.get());
+			if (outOfTime()) {
+				return null;
+			}
+			if (result.isExact()) {
+				// Only the search that raises alpha has found a better move:
+				double previousAlpha = alpha.get();
+				alpha.accumulate(result.getScore());
+				if (result.getScore() > previousAlpha) {
+					publishRootMove(child, result.getScore());
+				}
+			}
+			score = result;
+			return result;
+		}
 	}
 
-	public Move getMove() {
-		return move;
+	/**
+	 * The search of one of the younger brothers of a split node.
+	 */
+	@SuppressWarnings("serial")
+	private final class BrotherTask extends RecursiveTask<Double> {
+		private final TDMCNode node, child;
+		private final int index; // Of child in the search order.
+		private final double alpha, beta;
+		private final int depth;
+		private final SplitPoint split;
+		private double value; // The value of child for the player to move at node, once searched.
+		private boolean complete; // Was child searched without the split point being stopped?
+
+		private BrotherTask(TDMCNode node, TDMCNode child, int index, double alpha, double beta, int depth,
+				SplitPoint split) {
+			this.node = node;
+			this.child = child;
+			this.index = index;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.depth = depth;
+			this.split = split;
+		}
+
+		@Override
+		protected Double compute() {
+			value = searchLaterChild(node, child, index, alpha, beta, depth, split);
+			complete = !stopped(split);
+			if (complete && value >= beta) {
+				split.cutOff = true; // Stop the brothers still running, without waiting to be joined.
+			}
+			return value;
+		}
 	}
-}
\ No newline at end of file
+}
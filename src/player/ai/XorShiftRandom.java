@@ -0,0 +1,29 @@
+package player.ai;
+
+/**
+ * A xorshift random number generator for playouts: much cheaper than java.util.Random,
+ * which synchronizes on an AtomicLong for every number. Not thread-safe, so each thread
+ * uses its own.
+ */
+final class XorShiftRandom {
+	private long state;
+
+	XorShiftRandom(long seed) {
+		state = seed == 0L ? 0x9E3779B97F4A7C15L : seed; // The state must never be 0.
+	}
+
+	long nextLong() {
+		state ^= state << 13;
+		state ^= state >>> 7;
+		state ^= state << 17;
+		return state;
+	}
+
+	/**
+	 * Returns a number from 0 (inclusive) to bound (exclusive), by scaling the top 32 bits
+	 * of the next number instead of taking a remainder.
+	 */
+	int nextInt(int bound) {
+		return (int)(((nextLong() >>> 32) * bound) >>> 32);
+	}
+}